@@ -0,0 +1,212 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+
+/**
+ * Thin client of the {@link BatchDaemon}. If no daemon is running, the jobs are
+ * executed in-process by {@link BatchJobs}, so callers work the same with and
+ * without daemon. Every connection sends the secret of the token-file of the
+ * daemon first, if the file is missing no daemon of this user is running.
+ * Thread-safe, every job uses its own connection.
+ *
+ * @author ckroeger
+ */
+public class BatchClient {
+
+	private static final String METRIC_REMOTE = "daemon.client.remote";
+	private static final String METRIC_FALLBACK = "daemon.client.fallback";
+
+	private static final int CONNECT_TIMEOUT_MILLIS = 500;
+
+	private final int port;
+	private final File tokenFile;
+	private volatile boolean fallback = true;
+	private BatchJobs localJobs;
+
+	/**
+	 * Creates a client for the configured port.
+	 */
+	public BatchClient() {
+		this(BatchDaemon.getConfiguredPort());
+	}
+
+	/**
+	 * Creates a client with the configured token-file.
+	 *
+	 * @param port
+	 *            the port of the daemon (&gt; 0)
+	 */
+	public BatchClient(int port) {
+		this(port, BatchDaemon.getConfiguredTokenFile());
+	}
+
+	/**
+	 * Creates a client.
+	 *
+	 * @param port
+	 *            the port of the daemon (&gt; 0)
+	 * @param tokenFile
+	 *            the token-file of the daemon (!NULL)
+	 */
+	public BatchClient(int port, File tokenFile) {
+		if (port <= 0) {
+			throw new IllegalArgumentException("invalid port: " + port);
+		}
+		if (tokenFile == null) {
+			throw new IllegalArgumentException("tokenFile is null");
+		}
+		this.port = port;
+		this.tokenFile = tokenFile;
+	}
+
+	/**
+	 * Sets if jobs are executed in-process when no daemon is running.
+	 *
+	 * @param fallback
+	 *            false to fail with a {@link ConnectException} instead
+	 */
+	public void setFallback(boolean fallback) {
+		this.fallback = fallback;
+	}
+
+	/**
+	 * Determines if a daemon answers on the port.
+	 *
+	 * @return true if a daemon is running
+	 */
+	public boolean isDaemonRunning() {
+		try {
+			return Arrays.asList("pong").equals(executeRemote(Arrays
+					.asList("ping")));
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Executes a job by the daemon or, if none is running, in-process.
+	 *
+	 * @param job
+	 *            name and arguments of the job, see {@link BatchJobs} (!EMPTY)
+	 * @return the result-lines (!NULL)
+	 * @throws IllegalArgumentException
+	 *             if an argument contains a tab or line-break
+	 * @throws IOException
+	 *             if the job failed
+	 */
+	public List<String> execute(String... job) throws IOException {
+		if (job == null || job.length == 0) {
+			throw new IllegalArgumentException("no job given");
+		}
+		if (!BatchProtocol.STOP.equals(job[0]) && !BatchJobs.isJob(job[0])) {
+			// the daemon would close the connection
+			throw new IOException("unknown job: " + job[0]);
+		}
+		// fail early instead of executing it in-process
+		BatchProtocol.encode(Arrays.asList(job));
+		// the daemon runs in another working-directory
+		List<String> request = BatchJobs.absolutePaths(Arrays.asList(job));
+		try {
+			List<String> result = executeRemote(request);
+			Instrumentations.count(METRIC_REMOTE, 1);
+			return result;
+		} catch (ConnectException e) {
+			if (!fallback) {
+				throw e;
+			}
+		} catch (SocketTimeoutException e) {
+			if (!fallback) {
+				throw e;
+			}
+		}
+		if (BatchProtocol.STOP.equals(job[0])) {
+			// no daemon to stop
+			return Collections.emptyList();
+		}
+		Instrumentations.count(METRIC_FALLBACK, 1);
+		try {
+			return getLocalJobs().execute(request);
+		} catch (RuntimeException e) {
+			// same as reported by the daemon
+			throw new IOException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @throws ConnectException
+	 *             if no daemon is running or the token-file is missing
+	 * @throws SocketTimeoutException
+	 *             if the connect timed out
+	 */
+	private List<String> executeRemote(List<String> request)
+			throws IOException {
+		String token = BatchToken.read(tokenFile);
+		if (token == null) {
+			throw new ConnectException("no batch-daemon token in "
+					+ tokenFile);
+		}
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port),
+					CONNECT_TIMEOUT_MILLIS);
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(),
+					BatchProtocol.ENCODING);
+			writer.write(token);
+			writer.write('\n');
+			writer.write(BatchProtocol.encode(request));
+			writer.write('\n');
+			writer.flush();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), BatchProtocol.ENCODING));
+			return BatchProtocol.readResult(reader);
+		} finally {
+			socket.close();
+		}
+	}
+
+	private synchronized BatchJobs getLocalJobs() {
+		if (localJobs == null) {
+			localJobs = new BatchJobs();
+		}
+		return localJobs;
+	}
+
+	/**
+	 * Executes a job and prints the result-lines, e.g.
+	 * <code>BatchClient xpath pom.xml /project/version</code>. Exits with 1 if
+	 * the job failed.
+	 *
+	 * @param args
+	 *            name and arguments of the job
+	 */
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.err.println("usage: BatchClient JOB [ARGS...]");
+			System.exit(2);
+		}
+		try {
+			for (String line : new BatchClient().execute(args)) {
+				System.out.println(line);
+			}
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.javasnippets.utils.metrics.Instrumentations;
+
+/**
+ * Long-running daemon which executes {@link BatchJobs} for short-lived
+ * {@link BatchClient}s, so they neither pay the JVM-startup nor run the utils
+ * cold: the JIT-compiled code, the caches and the compiled xpaths stay warm.
+ * The daemon listens on a localhost-socket only, connections are served
+ * concurrently by a fixed number of threads. Jobs run with the permissions of
+ * the daemon, so a connection has to send the secret of the token-file first,
+ * which only the owner of the daemon can read. A wrong token or an unknown job
+ * closes the connection.
+ *
+ * @author ckroeger
+ */
+public class BatchDaemon implements Closeable {
+
+	private static final Logger log = Logger.getLogger(BatchDaemon.class);
+
+	/** System-property with the port of the daemon. */
+	public static final String PORT_PROPERTY = "org.javasnippets.utils.daemon.port";
+
+	/** Port of the daemon if {@value #PORT_PROPERTY} is not set. */
+	public static final int DEFAULT_PORT = 7611;
+
+	/** System-property with the path of the token-file. */
+	public static final String TOKEN_FILE_PROPERTY = "org.javasnippets.utils.daemon.tokenFile";
+
+	/**
+	 * Name of the token-file in the home-directory if
+	 * {@value #TOKEN_FILE_PROPERTY} is not set.
+	 */
+	public static final String DEFAULT_TOKEN_FILE = ".javasnippets-batch-daemon.token";
+
+	private static final String METRIC_CONNECTIONS = "daemon.connections";
+	private static final String METRIC_REJECTED = "daemon.rejected";
+
+	/** Idle connections are closed after this time. */
+	private static final int IDLE_TIMEOUT_MILLIS = 60000;
+	private static final int BACKLOG = 50;
+
+	private final int port;
+	private final int threads;
+	private final BatchJobs jobs;
+	private final File tokenFile;
+	private final CountDownLatch stopped = new CountDownLatch(1);
+	private final Set<Socket> connections = Collections
+			.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+	private volatile String token;
+	private volatile ServerSocket serverSocket;
+	private volatile ExecutorService executor;
+
+	/**
+	 * Creates a daemon with the configured port and a thread per processor.
+	 */
+	public BatchDaemon() {
+		this(getConfiguredPort(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a daemon.
+	 *
+	 * @param port
+	 *            the port, 0 for any free port
+	 * @param threads
+	 *            number of connections served concurrently (&gt; 0)
+	 */
+	public BatchDaemon(int port, int threads) {
+		this(port, threads, new BatchJobs());
+	}
+
+	/**
+	 * Creates a daemon.
+	 *
+	 * @param port
+	 *            the port, 0 for any free port
+	 * @param threads
+	 *            number of connections served concurrently (&gt; 0)
+	 * @param jobs
+	 *            executes the jobs (!NULL)
+	 */
+	public BatchDaemon(int port, int threads, BatchJobs jobs) {
+		this(port, threads, jobs, getConfiguredTokenFile());
+	}
+
+	/**
+	 * Creates a daemon.
+	 *
+	 * @param port
+	 *            the port, 0 for any free port
+	 * @param threads
+	 *            number of connections served concurrently (&gt; 0)
+	 * @param jobs
+	 *            executes the jobs (!NULL)
+	 * @param tokenFile
+	 *            the token-file, created by {@link #start()} if missing
+	 *            (!NULL)
+	 */
+	public BatchDaemon(int port, int threads, BatchJobs jobs, File tokenFile) {
+		if (port < 0 || threads <= 0 || jobs == null || tokenFile == null) {
+			throw new IllegalArgumentException();
+		}
+		this.port = port;
+		this.threads = threads;
+		this.jobs = jobs;
+		this.tokenFile = tokenFile;
+	}
+
+	/**
+	 * Determines the port of {@value #PORT_PROPERTY} or the
+	 * {@link #DEFAULT_PORT}.
+	 *
+	 * @return the port
+	 */
+	public static int getConfiguredPort() {
+		String value = System.getProperty(PORT_PROPERTY);
+		if (value == null || value.trim().isEmpty()) {
+			return DEFAULT_PORT;
+		}
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("invalid " + PORT_PROPERTY
+					+ ": " + value, e);
+		}
+	}
+
+	/**
+	 * Determines the token-file of {@value #TOKEN_FILE_PROPERTY} or
+	 * {@value #DEFAULT_TOKEN_FILE} in the home-directory.
+	 *
+	 * @return the token-file (!NULL)
+	 */
+	public static File getConfiguredTokenFile() {
+		String value = System.getProperty(TOKEN_FILE_PROPERTY);
+		if (value == null || value.trim().isEmpty()) {
+			return new File(System.getProperty("user.home"),
+					DEFAULT_TOKEN_FILE);
+		}
+		return new File(value.trim());
+	}
+
+	/**
+	 * Binds the socket, reads or creates the token-file and starts accepting
+	 * connections.
+	 *
+	 * @throws IOException
+	 *             if the port can not be bound, e.g. because a daemon is
+	 *             already running, or the token-file not be written
+	 */
+	public synchronized void start() throws IOException {
+		if (serverSocket != null) {
+			throw new IllegalStateException("daemon already started");
+		}
+		ServerSocket socket = new ServerSocket(port, BACKLOG,
+				InetAddress.getLoopbackAddress());
+		try {
+			// after binding, so a second daemon does not replace the token
+			token = BatchToken.readOrCreate(tokenFile);
+		} catch (IOException e) {
+			socket.close();
+			throw e;
+		}
+		serverSocket = socket;
+		executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "batch-daemon-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		Thread acceptor = new Thread(new Runnable() {
+			public void run() {
+				accept();
+			}
+		}, "batch-daemon-acceptor");
+		acceptor.start();
+	}
+
+	/**
+	 * Determines the bound port.
+	 *
+	 * @return the port, the configured one if not started
+	 */
+	public int getPort() {
+		ServerSocket socket = serverSocket;
+		return socket == null ? port : socket.getLocalPort();
+	}
+
+	/**
+	 * Waits until the daemon is stopped by {@link #close()} or a
+	 * <code>stop</code>-job.
+	 *
+	 * @throws InterruptedException
+	 *             if the thread is interrupted
+	 */
+	public void awaitStop() throws InterruptedException {
+		stopped.await();
+	}
+
+	/**
+	 * Stops accepting connections and closes the open ones. Running jobs are
+	 * interrupted.
+	 */
+	public synchronized void close() {
+		if (serverSocket != null) {
+			try {
+				serverSocket.close();
+			} catch (IOException e) {
+				// closing anyway
+			}
+			executor.shutdownNow();
+			for (Socket connection : connections) {
+				closeQuietly(connection);
+			}
+		}
+		stopped.countDown();
+	}
+
+	private void accept() {
+		ServerSocket socket = serverSocket;
+		try {
+			while (!socket.isClosed()) {
+				final Socket connection = socket.accept();
+				Instrumentations.count(METRIC_CONNECTIONS, 1);
+				connections.add(connection);
+				try {
+					executor.execute(new Runnable() {
+						public void run() {
+							serve(connection);
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					// stopped meanwhile
+					connections.remove(connection);
+					closeQuietly(connection);
+				}
+			}
+		} catch (IOException e) {
+			if (!socket.isClosed()) {
+				log.error("batch-daemon stopped", e);
+			}
+		} finally {
+			close();
+		}
+	}
+
+	/**
+	 * Executes the requests of a connection until it is closed, or closes it
+	 * on a wrong token or an unknown job.
+	 */
+	private void serve(Socket connection) {
+		try {
+			connection.setSoTimeout(IDLE_TIMEOUT_MILLIS);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					connection.getInputStream(), BatchProtocol.ENCODING));
+			Writer writer = new OutputStreamWriter(
+					connection.getOutputStream(), BatchProtocol.ENCODING);
+			if (!BatchToken.matches(token, reader.readLine())) {
+				Instrumentations.count(METRIC_REJECTED, 1);
+				return;
+			}
+			String line;
+			while ((line = reader.readLine()) != null) {
+				List<String> job = BatchProtocol.decode(line);
+				String name = job.get(0);
+				if (!BatchProtocol.STOP.equals(name) && !BatchJobs.isJob(name)) {
+					// no client of this daemon, e.g. a HTTP-request
+					Instrumentations.count(METRIC_REJECTED, 1);
+					return;
+				}
+				if (BatchProtocol.STOP.equals(name)) {
+					BatchProtocol.writeResult(writer,
+							Collections.<String> emptyList());
+					close();
+					return;
+				}
+				List<String> result;
+				try {
+					result = jobs.execute(job);
+				} catch (IOException e) {
+					BatchProtocol.writeError(writer, e);
+					continue;
+				} catch (RuntimeException e) {
+					BatchProtocol.writeError(writer, e);
+					continue;
+				}
+				BatchProtocol.writeResult(writer, result);
+			}
+		} catch (SocketTimeoutException e) {
+			// idle connection
+		} catch (SocketException e) {
+			// closed by the client or by close()
+		} catch (IOException e) {
+			log.warn("batch-daemon connection failed", e);
+		} finally {
+			connections.remove(connection);
+			closeQuietly(connection);
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// closing anyway
+		}
+	}
+
+	/**
+	 * Runs a daemon until it receives a <code>stop</code>-job.
+	 *
+	 * @param args
+	 *            optional port and number of threads
+	 * @throws Exception
+	 *             if the daemon can not be started
+	 */
+	public static void main(String[] args) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0])
+				: getConfiguredPort();
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime
+				.getRuntime().availableProcessors();
+		BatchDaemon daemon = new BatchDaemon(port, threads);
+		daemon.start();
+		System.out.println("batch-daemon listening on localhost:"
+				+ daemon.getPort() + ", token in " + daemon.tokenFile);
+		daemon.awaitStop();
+	}
+}
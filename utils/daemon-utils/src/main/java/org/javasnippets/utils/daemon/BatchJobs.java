@@ -0,0 +1,253 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.javasnippets.utils.mvn.ArchiveDiff;
+import org.javasnippets.utils.mvn.ArtefactChange;
+import org.javasnippets.utils.mvn.ArtefactMetadataUtils;
+import org.javasnippets.utils.mvn.MavenArtefactInfo;
+import org.javasnippets.utils.xml.XmlUtils;
+import org.javasnippets.utils.zip.ZipManifestLocation;
+import org.javasnippets.utils.zip.ZipUtils;
+import org.jdom2.Document;
+import org.jdom2.Element;
+
+/**
+ * Executes the jobs of the {@link BatchDaemon} and of the in-process fallback
+ * of the {@link BatchClient}. A job is a list of arguments, the first is its
+ * name; the result is a list of lines with tab-separated values:
+ * <ul>
+ * <li><code>ping</code>: <code>pong</code></li>
+ * <li><code>scan ARCHIVE</code>: groupId, artefactId, version, svn-revision
+ * and build-version of every nested jar</li>
+ * <li><code>diff OLD NEW</code>: <code>A</code>, <code>D</code> or
+ * <code>M</code> and the name of every added, removed or changed entry, then
+ * <code>V</code>, old and new entry-name, old and new version of every changed
+ * artefact</li>
+ * <li><code>zip DEST FOLDER [IGNORED...]</code>: the zip-file</li>
+ * <li><code>xpath FILE XPATH...</code>: the xpath and the normalized text of
+ * every found element</li>
+ * </ul>
+ * Relative paths are resolved against the working-directory of this process,
+ * so the {@link BatchClient} makes them absolute by
+ * {@link #absolutePaths(List)} before sending a job to the daemon. Parsed
+ * documents and scanned archives are cached until the file changes, compiled
+ * xpaths are cached by {@link XmlUtils#compileXPath(String)}. Thread-safe.
+ *
+ * @author ckroeger
+ */
+public class BatchJobs {
+
+	private static final String METRIC_JOB = "daemon.job";
+	private static final String METRIC_CACHE_HIT = "daemon.cache.hit";
+	private static final String METRIC_CACHE_MISS = "daemon.cache.miss";
+
+	private static final int CACHE_SIZE = 64;
+
+	private static final Set<String> JOBS = new HashSet<String>(Arrays.asList(
+			"ping", "scan", "diff", "zip", "xpath"));
+
+	private final LruCache<Document> documents = new LruCache<Document>(
+			CACHE_SIZE);
+	private final LruCache<List<String>> scans = new LruCache<List<String>>(
+			CACHE_SIZE);
+
+	/**
+	 * Executes a job.
+	 *
+	 * @param job
+	 *            name and arguments of the job (!EMPTY)
+	 * @return the result-lines (!NULL)
+	 * @throws IllegalArgumentException
+	 *             if the job is unknown or has invalid arguments
+	 * @throws IOException
+	 *             if a file can not be read or written
+	 */
+	public List<String> execute(List<String> job) throws IOException {
+		if (job == null || job.isEmpty()) {
+			throw new IllegalArgumentException("no job given");
+		}
+		String name = job.get(0);
+		List<String> args = job.subList(1, job.size());
+		long start = Instrumentations.startTime();
+		try {
+			if ("ping".equals(name)) {
+				checkArgs(name, args, 0, 0);
+				return Collections.singletonList("pong");
+			} else if ("scan".equals(name)) {
+				checkArgs(name, args, 1, 1);
+				return scan(new File(args.get(0)));
+			} else if ("diff".equals(name)) {
+				checkArgs(name, args, 2, 2);
+				return diff(new File(args.get(0)), new File(args.get(1)));
+			} else if ("zip".equals(name)) {
+				checkArgs(name, args, 2, Integer.MAX_VALUE);
+				return zip(args.get(0), args.get(1),
+						args.subList(2, args.size()));
+			} else if ("xpath".equals(name)) {
+				checkArgs(name, args, 2, Integer.MAX_VALUE);
+				return xpath(new File(args.get(0)),
+						args.subList(1, args.size()));
+			}
+			throw new IllegalArgumentException("unknown job: " + name);
+		} finally {
+			Instrumentations.time(METRIC_JOB + "." + name, start);
+		}
+	}
+
+	/**
+	 * Determines if a job is known.
+	 *
+	 * @param name
+	 *            name of the job (NULLABLE)
+	 * @return true if {@link #execute(List)} knows the job
+	 */
+	static boolean isJob(String name) {
+		return JOBS.contains(name);
+	}
+
+	/**
+	 * Makes the file-arguments of a job absolute against the working-directory
+	 * of the caller. Other arguments, like xpaths or ignored folder-names, and
+	 * unknown jobs are not changed.
+	 *
+	 * @param job
+	 *            name and arguments of the job (!EMPTY)
+	 * @return a copy of the job with absolute file-arguments (!NULL)
+	 */
+	static List<String> absolutePaths(List<String> job) {
+		List<String> resolved = new ArrayList<String>(job);
+		String name = resolved.get(0);
+		int files = 0;
+		if ("scan".equals(name) || "xpath".equals(name)) {
+			files = 1;
+		} else if ("diff".equals(name) || "zip".equals(name)) {
+			files = 2;
+		}
+		for (int i = 1; i <= files && i < resolved.size(); i++) {
+			String path = resolved.get(i);
+			if (!path.isEmpty()) {
+				resolved.set(i, new File(path).getAbsolutePath());
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Drops all cached documents and scans.
+	 */
+	public void clearCaches() {
+		documents.clear();
+		scans.clear();
+	}
+
+	private static void checkArgs(String name, List<String> args, int min,
+			int max) {
+		if (args.size() < min || args.size() > max) {
+			throw new IllegalArgumentException("invalid arguments for " + name
+					+ ": " + args);
+		}
+	}
+
+	private List<String> scan(File archive) throws IOException {
+		String key = LruCache.key(archive);
+		List<String> lines = scans.get(key);
+		if (lines != null) {
+			Instrumentations.count(METRIC_CACHE_HIT, 1);
+			return lines;
+		}
+		Instrumentations.count(METRIC_CACHE_MISS, 1);
+		lines = new ArrayList<String>();
+		for (MavenArtefactInfo info : ArtefactMetadataUtils
+				.listMavenArtefactInfos(archive)) {
+			lines.add(join(info.getGroupId(), info.getArtefactId(),
+					info.getVersion(), String.valueOf(info.getSvnRevision()),
+					info.getBuildVersion()));
+		}
+		lines = Collections.unmodifiableList(lines);
+		scans.put(key, lines);
+		return lines;
+	}
+
+	private List<String> diff(File oldArchive, File newArchive)
+			throws IOException {
+		ArchiveDiff diff = ArtefactMetadataUtils.diffArchives(oldArchive,
+				newArchive);
+		List<String> lines = new ArrayList<String>();
+		for (String name : diff.getAdded()) {
+			lines.add(join("A", name));
+		}
+		for (String name : diff.getRemoved()) {
+			lines.add(join("D", name));
+		}
+		for (String name : diff.getChanged()) {
+			lines.add(join("M", name));
+		}
+		for (ArtefactChange change : diff.getChangedArtefacts()) {
+			lines.add(join("V", change.getOldEntryName(),
+					change.getNewEntryName(), change.getOldInfo()
+							.getVersion(), change.getNewInfo().getVersion()));
+		}
+		return lines;
+	}
+
+	private List<String> zip(String destFile, String sourceFolder,
+			List<String> foldersToIgnore) throws IOException {
+		ZipUtils.zipFolder(destFile, sourceFolder,
+				foldersToIgnore.toArray(new String[foldersToIgnore.size()]),
+				null, ZipManifestLocation.NONE);
+		return Collections.singletonList(destFile);
+	}
+
+	private List<String> xpath(File file, List<String> xPaths)
+			throws IOException {
+		Document document = getDocument(file);
+		List<String> lines = new ArrayList<String>();
+		for (String xPath : xPaths) {
+			for (Element element : XmlUtils.getXPathElements(document, xPath)) {
+				lines.add(join(xPath, element.getTextNormalize()));
+			}
+		}
+		return lines;
+	}
+
+	/**
+	 * Determines the parsed document, the cached documents are only read and
+	 * never modified.
+	 */
+	private Document getDocument(File file) throws IOException {
+		String key = LruCache.key(file);
+		Document document = documents.get(key);
+		if (document != null) {
+			Instrumentations.count(METRIC_CACHE_HIT, 1);
+			return document;
+		}
+		Instrumentations.count(METRIC_CACHE_MISS, 1);
+		document = XmlUtils.getDocumentFromFile(file);
+		documents.put(key, document);
+		return document;
+	}
+
+	/**
+	 * Joins the values with tabs, tabs and line-breaks inside the values are
+	 * replaced by blanks.
+	 */
+	static String join(String... values) {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(String.valueOf(values[i]).replaceAll("[\t\r\n]", " "));
+		}
+		return line.toString();
+	}
+}
@@ -0,0 +1,119 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line-based protocol between {@link BatchClient} and {@link BatchDaemon}. The
+ * encoding is UTF-8. The first line of a connection is the {@link BatchToken},
+ * followed by the requests. A request is one line with the tab-separated name
+ * and arguments of a job. The response is either a line
+ * <code>OK&lt;tab&gt;COUNT</code> followed by COUNT result-lines or a single
+ * line <code>ERROR&lt;tab&gt;MESSAGE</code> if the job failed. A wrong token or
+ * a request of an unknown job closes the connection without response.
+ *
+ * @author ckroeger
+ */
+class BatchProtocol {
+
+	static final String ENCODING = "UTF-8";
+
+	/** Job which stops the daemon. */
+	static final String STOP = "stop";
+
+	private static final String OK = "OK";
+	private static final String ERROR = "ERROR";
+
+	private BatchProtocol() {
+		/* only static */
+	}
+
+	/**
+	 * Encodes a job as request-line.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if an argument contains a tab or line-break
+	 */
+	static String encode(List<String> job) {
+		StringBuilder line = new StringBuilder();
+		for (int i = 0; i < job.size(); i++) {
+			String arg = job.get(i);
+			if (arg == null || arg.matches("(?s).*[\t\r\n].*")) {
+				throw new IllegalArgumentException("invalid argument: " + arg);
+			}
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(arg);
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Decodes a request-line.
+	 */
+	static List<String> decode(String line) {
+		return new ArrayList<String>(Arrays.asList(line.split("\t", -1)));
+	}
+
+	static void writeResult(Writer writer, List<String> lines)
+			throws IOException {
+		writer.write(OK + "\t" + lines.size() + "\n");
+		for (String line : lines) {
+			writer.write(line);
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	static void writeError(Writer writer, Exception e) throws IOException {
+		String message = e.getMessage() == null ? e.toString() : e
+				.getMessage();
+		writer.write(ERROR + "\t" + message.replaceAll("[\t\r\n]+", " ")
+				+ "\n");
+		writer.flush();
+	}
+
+	/**
+	 * Reads a response.
+	 *
+	 * @return the result-lines
+	 * @throws IOException
+	 *             if the job failed or the response is invalid
+	 */
+	static List<String> readResult(BufferedReader reader) throws IOException {
+		String header = reader.readLine();
+		if (header == null) {
+			throw new IOException("daemon closed the connection");
+		}
+		int tab = header.indexOf('\t');
+		String status = tab < 0 ? header : header.substring(0, tab);
+		String value = tab < 0 ? "" : header.substring(tab + 1);
+		if (ERROR.equals(status)) {
+			throw new IOException(value);
+		}
+		if (!OK.equals(status)) {
+			throw new IOException("invalid response: " + header);
+		}
+		int count;
+		try {
+			count = Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IOException("invalid response: " + header, e);
+		}
+		List<String> lines = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			String line = reader.readLine();
+			if (line == null) {
+				throw new IOException("incomplete response, expected " + count
+						+ " lines");
+			}
+			lines.add(line);
+		}
+		return lines;
+	}
+}
@@ -0,0 +1,131 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Secret shared by the {@link BatchDaemon} and the {@link BatchClient}s of a
+ * user. It is stored in a file only its owner can read and is sent as first
+ * line of every connection, so other local users and other local programs,
+ * e.g. a browser posting to the port, can not submit jobs.
+ *
+ * @author ckroeger
+ */
+class BatchToken {
+
+	private static final int TOKEN_BYTES = 32;
+
+	private static final Set<PosixFilePermission> OWNER_ONLY = EnumSet.of(
+			PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+
+	private static final SecureRandom random = new SecureRandom();
+
+	private BatchToken() {
+		/* only static */
+	}
+
+	/**
+	 * Reads the token.
+	 *
+	 * @return the token or null if the file does not exist or is empty
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	static String read(File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+		String token = new String(Files.readAllBytes(file.toPath()),
+				BatchProtocol.ENCODING).trim();
+		return token.isEmpty() ? null : token;
+	}
+
+	/**
+	 * Reads the token or, if the file does not exist or others may access it,
+	 * writes a new random token which only the owner can read.
+	 *
+	 * @return the token (!EMPTY)
+	 * @throws IOException
+	 *             if the file can not be read or written
+	 */
+	static String readOrCreate(File file) throws IOException {
+		Path path = file.toPath().toAbsolutePath();
+		if (Files.isRegularFile(path) && isOwnerOnly(path)) {
+			String token = read(file);
+			if (token != null) {
+				return token;
+			}
+		}
+		byte[] bytes = new byte[TOKEN_BYTES];
+		random.nextBytes(bytes);
+		StringBuilder token = new StringBuilder();
+		for (byte b : bytes) {
+			token.append(String.format("%02x", b & 0xFF));
+		}
+		Path directory = path.getParent();
+		Files.createDirectories(directory);
+		Path temp = Files.createTempFile(directory, "." + path.getFileName(),
+				".tmp");
+		try {
+			// restricted before the token is written
+			restrictToOwner(temp);
+			Files.write(temp, token.toString().getBytes(BatchProtocol.ENCODING));
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		return token.toString();
+	}
+
+	/**
+	 * Compares in constant time, so the token can not be guessed by timing.
+	 *
+	 * @return true if the sent token is the expected one
+	 */
+	static boolean matches(String expected, String sent) throws IOException {
+		if (sent == null) {
+			return false;
+		}
+		return MessageDigest.isEqual(
+				expected.getBytes(BatchProtocol.ENCODING),
+				sent.getBytes(BatchProtocol.ENCODING));
+	}
+
+	private static boolean isOwnerOnly(Path path) throws IOException {
+		PosixFileAttributeView view = Files.getFileAttributeView(path,
+				PosixFileAttributeView.class);
+		if (view == null) {
+			// not checkable, restricted when written
+			return true;
+		}
+		Set<PosixFilePermission> permissions = view.readAttributes()
+				.permissions();
+		permissions.removeAll(OWNER_ONLY);
+		permissions.remove(PosixFilePermission.OWNER_EXECUTE);
+		return permissions.isEmpty();
+	}
+
+	private static void restrictToOwner(Path path) throws IOException {
+		PosixFileAttributeView view = Files.getFileAttributeView(path,
+				PosixFileAttributeView.class);
+		if (view != null) {
+			view.setPermissions(OWNER_ONLY);
+		} else {
+			File file = path.toFile();
+			file.setReadable(false, false);
+			file.setReadable(true, true);
+			file.setWritable(false, false);
+			file.setWritable(true, true);
+		}
+	}
+}
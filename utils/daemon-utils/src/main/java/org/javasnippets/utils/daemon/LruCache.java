@@ -0,0 +1,63 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache which evicts the least recently used value. Keys of files
+ * contain their size and modification-time, so a changed file is read again.
+ * Thread-safe.
+ *
+ * @author ckroeger
+ */
+class LruCache<V> {
+
+	private final Map<String, V> values;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param maxSize
+	 *            maximum number of values
+	 */
+	LruCache(final int maxSize) {
+		this.values = new LinkedHashMap<String, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Determines the key of the current state of a file.
+	 *
+	 * @param file
+	 *            the file (!NULL)
+	 * @return the key (!NULL)
+	 */
+	static String key(File file) {
+		File absolute = file.getAbsoluteFile();
+		return absolute.getPath() + "@" + absolute.lastModified() + ":"
+				+ absolute.length();
+	}
+
+	synchronized V get(String key) {
+		return values.get(key);
+	}
+
+	synchronized void put(String key, V value) {
+		values.put(key, value);
+	}
+
+	synchronized int size() {
+		return values.size();
+	}
+
+	synchronized void clear() {
+		values.clear();
+	}
+}
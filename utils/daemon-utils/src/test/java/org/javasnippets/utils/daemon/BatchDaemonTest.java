@@ -0,0 +1,329 @@
+package org.javasnippets.utils.daemon;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipFile;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.javasnippets.utils.metrics.MetricsInstrumentation;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class BatchDaemonTest {
+
+	private static final String XML = "<project><version>1.0</version>"
+			+ "<modules><module>a</module><module>b</module></modules>"
+			+ "</project>";
+
+	private BatchDaemon daemon;
+	private BatchClient client;
+	private File folder;
+	private File tokenFile;
+
+	@BeforeClass
+	public void setUp() throws IOException {
+		folder = File.createTempFile("batch", "");
+		folder.delete();
+		folder.mkdirs();
+		tokenFile = new File(folder, "daemon.token");
+		daemon = new BatchDaemon(0, 4, new BatchJobs(), tokenFile);
+		daemon.start();
+		client = new BatchClient(daemon.getPort(), tokenFile);
+		client.setFallback(false);
+	}
+
+	@AfterClass
+	public void tearDown() {
+		daemon.close();
+		delete(folder);
+	}
+
+	@Test
+	public void testPing() throws IOException {
+		Assert.assertTrue(client.isDaemonRunning());
+		Assert.assertEquals(client.execute("ping"), Arrays.asList("pong"));
+	}
+
+	@Test
+	public void testXPath() throws IOException {
+		File pom = write("pom.xml", XML);
+		List<String> lines = client.execute("xpath", pom.getPath(),
+				"/project/version", "//module");
+		Assert.assertEquals(lines, Arrays.asList("/project/version\t1.0",
+				"//module\ta", "//module\tb"));
+	}
+
+	@Test
+	public void testDocumentCache() throws IOException {
+		MetricsInstrumentation metrics = new MetricsInstrumentation();
+		Instrumentations.set(metrics);
+		try {
+			File pom = write("cached.xml", XML);
+			client.execute("xpath", pom.getPath(), "/project/version");
+			client.execute("xpath", pom.getPath(), "/project/version");
+			Assert.assertEquals(metrics.getCounter("daemon.cache.miss"), 1);
+			Assert.assertEquals(metrics.getCounter("daemon.cache.hit"), 1);
+		} finally {
+			Instrumentations.set(null);
+		}
+	}
+
+	@Test
+	public void testZipAndScan() throws Exception {
+		File source = new File(folder, "source");
+		source.mkdirs();
+		write("source/a.txt", "a");
+		write("source/b.txt", "b");
+		File zip = new File(folder, "source.zip");
+		Assert.assertEquals(client.execute("zip", zip.getPath(),
+				source.getPath()), Arrays.asList(zip.getPath()));
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			Assert.assertEquals(zipFile.size(), 2);
+		} finally {
+			zipFile.close();
+		}
+		Assert.assertEquals(client.execute("scan", zip.getPath()),
+				Collections.emptyList());
+		Assert.assertEquals(client.execute("diff", zip.getPath(),
+				zip.getPath()), Collections.emptyList());
+	}
+
+	@Test
+	public void testAbsolutePaths() {
+		String pom = new File("pom.xml").getAbsolutePath();
+		Assert.assertEquals(BatchJobs.absolutePaths(Arrays.asList("xpath",
+				"pom.xml", "project/version")), Arrays.asList("xpath", pom,
+				"project/version"));
+		Assert.assertEquals(BatchJobs.absolutePaths(Arrays.asList("zip",
+				"a.zip", "a", "target")), Arrays.asList("zip",
+				new File("a.zip").getAbsolutePath(),
+				new File("a").getAbsolutePath(), "target"));
+		Assert.assertEquals(BatchJobs.absolutePaths(Arrays.asList("diff",
+				"old.zip", pom)), Arrays.asList("diff",
+				new File("old.zip").getAbsolutePath(), pom));
+		Assert.assertEquals(BatchJobs.absolutePaths(Arrays.asList("ping")),
+				Arrays.asList("ping"));
+	}
+
+	@Test
+	public void testConcurrentJobs() throws Exception {
+		final File pom = write("concurrent.xml", XML);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < 50; i++) {
+				results.add(executor.submit(new Callable<List<String>>() {
+					public List<String> call() throws IOException {
+						return client.execute("xpath", pom.getPath(),
+								"/project/version");
+					}
+				}));
+			}
+			for (Future<List<String>> result : results) {
+				Assert.assertEquals(result.get(),
+						Arrays.asList("/project/version\t1.0"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testError() throws IOException {
+		try {
+			client.execute("unknown");
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals(e.getMessage(), "unknown job: unknown");
+		}
+		try {
+			client.execute("xpath", new File(folder, "missing.xml").getPath(),
+					"/a");
+			Assert.fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSeveralRequestsOnOneConnection() throws IOException {
+		Socket socket = connect();
+		try {
+			Writer writer = new OutputStreamWriter(socket.getOutputStream(),
+					BatchProtocol.ENCODING);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					socket.getInputStream(), BatchProtocol.ENCODING));
+			writer.write(BatchToken.read(tokenFile) + "\n");
+			writer.write("ping\n");
+			writer.write("xpath\t" + new File(folder, "missing.xml") + "\t/a\n");
+			writer.write("ping\n");
+			writer.flush();
+			Assert.assertEquals(BatchProtocol.readResult(reader),
+					Arrays.asList("pong"));
+			try {
+				BatchProtocol.readResult(reader);
+				Assert.fail();
+			} catch (IOException e) {
+				// the job failed, the connection is kept
+			}
+			Assert.assertEquals(BatchProtocol.readResult(reader),
+					Arrays.asList("pong"));
+
+			// an unknown job closes the connection
+			writer.write("unknown\n");
+			writer.write("ping\n");
+			writer.flush();
+			Assert.assertNull(reader.readLine());
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test
+	public void testTokenFile() throws IOException {
+		String token = BatchToken.read(tokenFile);
+		Assert.assertEquals(token.length(), 64);
+		PosixFileAttributeView view = Files.getFileAttributeView(
+				tokenFile.toPath(), PosixFileAttributeView.class);
+		if (view == null) {
+			throw new SkipException("no posix file-permissions");
+		}
+		Assert.assertEquals(view.readAttributes().permissions(), EnumSet.of(
+				PosixFilePermission.OWNER_READ,
+				PosixFilePermission.OWNER_WRITE));
+		// kept by the next daemon
+		Assert.assertEquals(BatchToken.readOrCreate(tokenFile), token);
+	}
+
+	@Test
+	public void testWrongToken() throws IOException {
+		File wrongTokenFile = write("wrong.token", "wrong");
+		BatchClient wrongClient = new BatchClient(daemon.getPort(),
+				wrongTokenFile);
+		wrongClient.setFallback(false);
+		Assert.assertFalse(wrongClient.isDaemonRunning());
+		try {
+			wrongClient.execute("ping");
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals(e.getMessage(), "daemon closed the connection");
+		}
+		BatchClient noTokenClient = new BatchClient(daemon.getPort(),
+				new File(folder, "missing.token"));
+		noTokenClient.setFallback(false);
+		try {
+			noTokenClient.execute("ping");
+			Assert.fail();
+		} catch (ConnectException e) {
+			// no token, no daemon of this user
+		}
+	}
+
+	@Test
+	public void testRequestWithoutTokenIsNotExecuted() throws IOException {
+		File source = new File(folder, "unauthorized");
+		source.mkdirs();
+		write("unauthorized/a.txt", "a");
+		File zip = new File(folder, "unauthorized.zip");
+		for (String line : Arrays.asList("zip\t" + zip + "\t" + source,
+				"POST / HTTP/1.1")) {
+			Socket socket = connect();
+			try {
+				Writer writer = new OutputStreamWriter(
+						socket.getOutputStream(), BatchProtocol.ENCODING);
+				writer.write(line + "\n");
+				writer.write("zip\t" + zip + "\t" + source + "\n");
+				writer.flush();
+				BufferedReader reader = new BufferedReader(
+						new InputStreamReader(socket.getInputStream(),
+								BatchProtocol.ENCODING));
+				Assert.assertNull(reader.readLine());
+			} finally {
+				socket.close();
+			}
+		}
+		Assert.assertFalse(zip.exists());
+	}
+
+	@Test
+	public void testFallback() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		int freePort = socket.getLocalPort();
+		socket.close();
+		BatchClient local = new BatchClient(freePort, tokenFile);
+		Assert.assertFalse(local.isDaemonRunning());
+		File pom = write("fallback.xml", XML);
+		Assert.assertEquals(local.execute("xpath", pom.getPath(),
+				"/project/version"), Arrays.asList("/project/version\t1.0"));
+		try {
+			local.execute("unknown");
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertEquals(e.getMessage(), "unknown job: unknown");
+		}
+		Assert.assertEquals(local.execute("stop"), Collections.emptyList());
+	}
+
+	@Test
+	public void testStop() throws Exception {
+		BatchDaemon other = new BatchDaemon(0, 1, new BatchJobs(), tokenFile);
+		other.start();
+		BatchClient otherClient = new BatchClient(other.getPort(), tokenFile);
+		otherClient.setFallback(false);
+		Assert.assertTrue(otherClient.isDaemonRunning());
+		otherClient.execute("stop");
+		other.awaitStop();
+		Assert.assertFalse(otherClient.isDaemonRunning());
+	}
+
+	private Socket connect() throws IOException {
+		return new Socket(InetAddress.getLoopbackAddress(), daemon.getPort());
+	}
+
+	private File write(String name, String content) throws IOException {
+		File file = new File(folder, name);
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(content.getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,70 @@
+package org.javasnippets.utils.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link Instrumentation} which reports to several delegates, e.g. to a
+ * {@link MetricsInstrumentation} and a {@link JfrInstrumentation}.
+ *
+ * @author ckroeger
+ */
+public class CompositeInstrumentation implements Instrumentation {
+
+	private final Instrumentation[] delegates;
+
+	/**
+	 * Creates a new composite.
+	 *
+	 * @param delegates
+	 *            the delegates (!NULL)
+	 */
+	public CompositeInstrumentation(Instrumentation... delegates) {
+		if (delegates == null || Arrays.asList(delegates).contains(null)) {
+			throw new IllegalArgumentException("delegates must not be null");
+		}
+		this.delegates = delegates.clone();
+	}
+
+	/**
+	 * Determines the delegates.
+	 *
+	 * @return the delegates (!NULL)
+	 */
+	public List<Instrumentation> getDelegates() {
+		return Collections.unmodifiableList(new ArrayList<Instrumentation>(
+				Arrays.asList(delegates)));
+	}
+
+	public boolean isEnabled() {
+		for (Instrumentation delegate : delegates) {
+			if (delegate.isEnabled()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public void count(String name, long delta) {
+		for (Instrumentation delegate : delegates) {
+			if (delegate.isEnabled()) {
+				delegate.count(name, delta);
+			}
+		}
+	}
+
+	public void time(String name, long nanos) {
+		for (Instrumentation delegate : delegates) {
+			if (delegate.isEnabled()) {
+				delegate.time(name, nanos);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CompositeInstrumentation " + Arrays.toString(delegates);
+	}
+}
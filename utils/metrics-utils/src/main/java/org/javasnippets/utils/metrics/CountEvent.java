@@ -0,0 +1,27 @@
+package org.javasnippets.utils.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight-Recorder-event of {@link Instrumentation#count(String, long)}.
+ *
+ * @author ckroeger
+ */
+@Name("org.javasnippets.utils.Count")
+@Label("Utils Count")
+@Category("javasnippets-utils")
+@Description("Increment of a counter, e.g. bytes, entries or cache-hits")
+@StackTrace(false)
+final class CountEvent extends Event {
+
+	@Label("Name")
+	String name;
+
+	@Label("Delta")
+	long delta;
+}
@@ -0,0 +1,154 @@
+package org.javasnippets.utils.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power-of-two buckets. Bucket i holds
+ * the values in [2^i, 2^(i+1)), so percentiles are exact to a factor of two
+ * while the memory stays constant.
+ *
+ * @author ckroeger
+ */
+public class Histogram {
+
+	private static final int BUCKETS = 64;
+
+	private final String name;
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	Histogram(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records one duration.
+	 *
+	 * @param nanos
+	 *            duration in nanoseconds, negative values count as 0
+	 */
+	void record(long nanos) {
+		long value = Math.max(0, nanos);
+		buckets.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		totalNanos.addAndGet(value);
+		long min = minNanos.get();
+		while (value < min && !minNanos.compareAndSet(min, value)) {
+			min = minNanos.get();
+		}
+		long max = maxNanos.get();
+		while (value > max && !maxNanos.compareAndSet(max, value)) {
+			max = maxNanos.get();
+		}
+	}
+
+	private static int bucketOf(long value) {
+		return value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Determines the name of the timer.
+	 *
+	 * @return name of the timer
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Determines the number of recorded durations.
+	 *
+	 * @return number of durations
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Determines the sum of all durations.
+	 *
+	 * @return sum in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * Determines the smallest duration.
+	 *
+	 * @return smallest duration in nanoseconds, 0 if nothing was recorded
+	 */
+	public long getMinNanos() {
+		return getCount() == 0 ? 0 : minNanos.get();
+	}
+
+	/**
+	 * Determines the largest duration.
+	 *
+	 * @return largest duration in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Determines the average duration.
+	 *
+	 * @return average in nanoseconds, 0 if nothing was recorded
+	 */
+	public long getMeanNanos() {
+		long executions = getCount();
+		return executions == 0 ? 0 : getTotalNanos() / executions;
+	}
+
+	/**
+	 * Determines an upper bound of the given percentile. The result is the
+	 * upper end of the bucket the percentile falls into, capped by the
+	 * largest duration.
+	 *
+	 * @param percentile
+	 *            percentile in (0, 100]
+	 * @return upper bound in nanoseconds, 0 if nothing was recorded
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (percentile <= 0 || percentile > 100) {
+			throw new IllegalArgumentException("percentile must be in (0, 100]");
+		}
+		long[] snapshot = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				long upper = i >= 62 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+				return Math.min(upper, getMaxNanos());
+			}
+		}
+		return getMaxNanos();
+	}
+
+	@Override
+	public String toString() {
+		return name + " [count=" + getCount() + ", mean="
+				+ toMicros(getMeanNanos()) + "us, p99<="
+				+ toMicros(getCount() == 0 ? 0 : getPercentileNanos(99))
+				+ "us, max=" + toMicros(getMaxNanos()) + "us]";
+	}
+
+	private static long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
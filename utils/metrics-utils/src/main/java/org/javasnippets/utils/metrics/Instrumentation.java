@@ -0,0 +1,43 @@
+package org.javasnippets.utils.metrics;
+
+/**
+ * SPI for timing- and volume-data of the utils. Metric-names are dotted
+ * strings prefixed with the module, e.g. <code>zip.bytes.read</code> or
+ * <code>xml.parse</code>. Implementations must be thread-safe.
+ * <p>
+ * The utils report through {@link Instrumentations}, which checks
+ * {@link #isEnabled()} first, so a disabled implementation costs a volatile
+ * read per call-site.
+ *
+ * @author ckroeger
+ */
+public interface Instrumentation {
+
+	/**
+	 * Determines if data should be reported at all.
+	 *
+	 * @return true if {@link #count(String, long)} and
+	 *         {@link #time(String, long)} should be called
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Adds to a counter, e.g. bytes, entries, cache-hits or round-trips.
+	 *
+	 * @param name
+	 *            name of the counter (!EMPTY)
+	 * @param delta
+	 *            value to add
+	 */
+	void count(String name, long delta);
+
+	/**
+	 * Records a duration, e.g. of a parse, compile or SVN-round-trip.
+	 *
+	 * @param name
+	 *            name of the timer (!EMPTY)
+	 * @param nanos
+	 *            duration in nanoseconds
+	 */
+	void time(String name, long nanos);
+}
@@ -0,0 +1,213 @@
+package org.javasnippets.utils.metrics;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Holder of the global {@link Instrumentation} and facade for the
+ * call-sites. The default reports nothing; without code-changes it is
+ * configured with the system-property {@value #PROPERTY}, a comma-separated
+ * list of <code>metrics</code>, <code>jfr</code>, <code>none</code> or
+ * class-names of {@link Instrumentation}s with a public default-constructor.
+ * If the property is not set, the implementations registered for the
+ * {@link ServiceLoader} are used.
+ * <p>
+ * Typical call-site:
+ *
+ * <pre>
+ * long start = Instrumentations.startTime();
+ * ...
+ * Instrumentations.time(&quot;xml.parse&quot;, start);
+ * Instrumentations.count(&quot;xml.bytes.read&quot;, length);
+ * </pre>
+ *
+ * @author ckroeger
+ */
+public class Instrumentations {
+
+	/** Name of the system-property with the configuration. */
+	public static final String PROPERTY = "org.javasnippets.utils.instrumentation";
+
+	private static final Logger log = Logger.getLogger(Instrumentations.class
+			.getName());
+
+	private static final Instrumentation NO_OP = new NoOpInstrumentation();
+
+	private static volatile Instrumentation instrumentation = configureDefault();
+
+	/**
+	 * Determines the global {@link Instrumentation}.
+	 *
+	 * @return the {@link Instrumentation} (!NULL)
+	 */
+	public static Instrumentation get() {
+		return instrumentation;
+	}
+
+	/**
+	 * Sets the global {@link Instrumentation}.
+	 *
+	 * @param instrumentation
+	 *            the {@link Instrumentation}, null for the no-op default
+	 */
+	public static void set(Instrumentation instrumentation) {
+		Instrumentations.instrumentation = instrumentation == null ? NO_OP
+				: instrumentation;
+	}
+
+	/**
+	 * Determines the {@link Instrumentation} which reports nothing.
+	 *
+	 * @return the no-op {@link Instrumentation} (!NULL)
+	 */
+	public static Instrumentation noOp() {
+		return NO_OP;
+	}
+
+	/**
+	 * Finds an {@link Instrumentation} of the given type in the global one,
+	 * also within a {@link CompositeInstrumentation}.
+	 *
+	 * @param type
+	 *            type to search for (!NULL)
+	 * @return the {@link Instrumentation} or null if not installed
+	 */
+	public static <T extends Instrumentation> T find(Class<T> type) {
+		return find(instrumentation, type);
+	}
+
+	private static <T extends Instrumentation> T find(
+			Instrumentation candidate, Class<T> type) {
+		if (type.isInstance(candidate)) {
+			return type.cast(candidate);
+		}
+		if (candidate instanceof CompositeInstrumentation) {
+			for (Instrumentation delegate : ((CompositeInstrumentation) candidate)
+					.getDelegates()) {
+				T found = find(delegate, type);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Determines the start-time of a measurement.
+	 *
+	 * @return {@link System#nanoTime()} or 0 if disabled
+	 */
+	public static long startTime() {
+		return instrumentation.isEnabled() ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration since the given start-time.
+	 *
+	 * @param name
+	 *            name of the timer (!EMPTY)
+	 * @param startTime
+	 *            result of {@link #startTime()}, 0 is ignored
+	 */
+	public static void time(String name, long startTime) {
+		if (startTime == 0) {
+			return;
+		}
+		Instrumentation current = instrumentation;
+		if (current.isEnabled()) {
+			current.time(name, System.nanoTime() - startTime);
+		}
+	}
+
+	/**
+	 * Adds to a counter.
+	 *
+	 * @param name
+	 *            name of the counter (!EMPTY)
+	 * @param delta
+	 *            value to add
+	 */
+	public static void count(String name, long delta) {
+		Instrumentation current = instrumentation;
+		if (current.isEnabled()) {
+			current.count(name, delta);
+		}
+	}
+
+	/**
+	 * Creates the {@link Instrumentation} of the system-property, an invalid
+	 * configuration must not break the utils.
+	 */
+	private static Instrumentation configureDefault() {
+		try {
+			return configure(System.getProperty(PROPERTY));
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Instrumentation disabled: " + e.getMessage(),
+					e);
+			return NO_OP;
+		}
+	}
+
+	/**
+	 * Creates the {@link Instrumentation} of a configuration.
+	 *
+	 * @param configuration
+	 *            value of {@value #PROPERTY} (NULLABLE)
+	 * @return the {@link Instrumentation} (!NULL)
+	 */
+	static Instrumentation configure(String configuration) {
+		List<Instrumentation> configured = new ArrayList<Instrumentation>();
+		if (configuration == null) {
+			for (Instrumentation provided : ServiceLoader
+					.load(Instrumentation.class)) {
+				configured.add(provided);
+			}
+		} else {
+			for (String name : configuration.split(",")) {
+				Instrumentation created = create(name.trim());
+				if (created != null) {
+					configured.add(created);
+				}
+			}
+		}
+		if (configured.isEmpty()) {
+			return NO_OP;
+		}
+		if (configured.size() == 1) {
+			return configured.get(0);
+		}
+		return new CompositeInstrumentation(
+				configured.toArray(new Instrumentation[configured.size()]));
+	}
+
+	private static Instrumentation create(String name) {
+		if (name.isEmpty() || "none".equals(name)) {
+			return null;
+		}
+		if ("metrics".equals(name)) {
+			return new MetricsInstrumentation();
+		}
+		if ("jfr".equals(name)) {
+			try {
+				return new JfrInstrumentation();
+			} catch (LinkageError e) {
+				throw new IllegalArgumentException("JFR is not available", e);
+			}
+		}
+		try {
+			return Class.forName(name).asSubclass(Instrumentation.class)
+					.getDeclaredConstructor().newInstance();
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException("invalid " + PROPERTY + ": "
+					+ name + ", constructor failed", e.getCause());
+		} catch (Exception e) {
+			throw new IllegalArgumentException("invalid " + PROPERTY + ": "
+					+ name, e);
+		}
+	}
+}
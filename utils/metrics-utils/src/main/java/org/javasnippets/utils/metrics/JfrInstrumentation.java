@@ -0,0 +1,49 @@
+package org.javasnippets.utils.metrics;
+
+import jdk.jfr.EventType;
+
+/**
+ * {@link Instrumentation} which emits Java-Flight-Recorder-events
+ * (<code>org.javasnippets.utils.Count</code> and
+ * <code>org.javasnippets.utils.Time</code>). It is only enabled while a
+ * recording with these events is running, so it can stay installed in
+ * production.
+ * <p>
+ * Needs a JVM with the jdk.jfr-module (Java 11 or 8u262 and later).
+ *
+ * @author ckroeger
+ */
+public class JfrInstrumentation implements Instrumentation {
+
+	private static final EventType COUNT_TYPE = EventType
+			.getEventType(CountEvent.class);
+	private static final EventType TIME_TYPE = EventType
+			.getEventType(TimeEvent.class);
+
+	public boolean isEnabled() {
+		return COUNT_TYPE.isEnabled() || TIME_TYPE.isEnabled();
+	}
+
+	public void count(String name, long delta) {
+		CountEvent event = new CountEvent();
+		if (event.shouldCommit()) {
+			event.name = name;
+			event.delta = delta;
+			event.commit();
+		}
+	}
+
+	public void time(String name, long nanos) {
+		TimeEvent event = new TimeEvent();
+		if (event.shouldCommit()) {
+			event.name = name;
+			event.nanos = nanos;
+			event.commit();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "JfrInstrumentation";
+	}
+}
@@ -0,0 +1,119 @@
+package org.javasnippets.utils.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Instrumentation} which keeps counters and {@link Histogram}s in
+ * memory.
+ *
+ * @author ckroeger
+ */
+public class MetricsInstrumentation implements Instrumentation {
+
+	private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+
+	public boolean isEnabled() {
+		return true;
+	}
+
+	public void count(String name, long delta) {
+		AtomicLong counter = counters.get(name);
+		if (counter == null) {
+			AtomicLong created = new AtomicLong();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		counter.addAndGet(delta);
+	}
+
+	public void time(String name, long nanos) {
+		getOrCreateHistogram(name).record(nanos);
+	}
+
+	private Histogram getOrCreateHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram created = new Histogram(name);
+			histogram = histograms.putIfAbsent(name, created);
+			if (histogram == null) {
+				histogram = created;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * Determines the value of a counter.
+	 *
+	 * @param name
+	 *            name of the counter
+	 * @return value of the counter, 0 if it was never counted
+	 */
+	public long getCounter(String name) {
+		AtomicLong counter = counters.get(name);
+		return counter == null ? 0 : counter.get();
+	}
+
+	/**
+	 * Determines the values of all counters.
+	 *
+	 * @return counter-name to value, sorted by name (!NULL)
+	 */
+	public Map<String, Long> getCounters() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+			result.put(counter.getKey(), counter.getValue().get());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Determines the {@link Histogram} of a timer.
+	 *
+	 * @param name
+	 *            name of the timer
+	 * @return the {@link Histogram}, null if nothing was recorded
+	 */
+	public Histogram getHistogram(String name) {
+		return histograms.get(name);
+	}
+
+	/**
+	 * Determines all {@link Histogram}s.
+	 *
+	 * @return timer-name to {@link Histogram}, sorted by name (!NULL)
+	 */
+	public Map<String, Histogram> getHistograms() {
+		return Collections.unmodifiableMap(new TreeMap<String, Histogram>(
+				histograms));
+	}
+
+	/**
+	 * Removes all counters and histograms.
+	 */
+	public void reset() {
+		counters.clear();
+		histograms.clear();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("MetricsInstrumentation");
+		for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+			result.append("\n  ").append(counter.getKey()).append(" = ")
+					.append(counter.getValue());
+		}
+		for (Histogram histogram : getHistograms().values()) {
+			result.append("\n  ").append(histogram);
+		}
+		return result.toString();
+	}
+}
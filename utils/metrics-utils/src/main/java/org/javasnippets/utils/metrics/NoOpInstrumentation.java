@@ -0,0 +1,26 @@
+package org.javasnippets.utils.metrics;
+
+/**
+ * Default {@link Instrumentation} which reports nothing.
+ *
+ * @author ckroeger
+ */
+final class NoOpInstrumentation implements Instrumentation {
+
+	public boolean isEnabled() {
+		return false;
+	}
+
+	public void count(String name, long delta) {
+		/* disabled */
+	}
+
+	public void time(String name, long nanos) {
+		/* disabled */
+	}
+
+	@Override
+	public String toString() {
+		return "NoOpInstrumentation";
+	}
+}
@@ -0,0 +1,31 @@
+package org.javasnippets.utils.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight-Recorder-event of {@link Instrumentation#time(String, long)}. The
+ * duration is measured by the caller, so it is a field and not the duration
+ * of the event itself.
+ *
+ * @author ckroeger
+ */
+@Name("org.javasnippets.utils.Time")
+@Label("Utils Time")
+@Category("javasnippets-utils")
+@Description("Duration of a parse, compile, zip or SVN-round-trip")
+@StackTrace(false)
+final class TimeEvent extends Event {
+
+	@Label("Name")
+	String name;
+
+	@Label("Duration")
+	@Timespan(Timespan.NANOSECONDS)
+	long nanos;
+}
@@ -0,0 +1,127 @@
+package org.javasnippets.utils.metrics;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+public class InstrumentationsTest {
+
+	@AfterMethod
+	public void resetInstrumentation() {
+		Instrumentations.set(null);
+	}
+
+	@Test
+	public void testNoOpDefault() {
+		assertSame(Instrumentations.get(), Instrumentations.noOp());
+		assertEquals(Instrumentations.startTime(), 0);
+		Instrumentations.count("test.count", 1);
+		Instrumentations.time("test.time", 0);
+		assertNull(Instrumentations.find(MetricsInstrumentation.class));
+	}
+
+	@Test
+	public void testMetrics() {
+		MetricsInstrumentation metrics = new MetricsInstrumentation();
+		Instrumentations.set(metrics);
+		Instrumentations.count("test.count", 2);
+		Instrumentations.count("test.count", 3);
+		long start = Instrumentations.startTime();
+		assertTrue(start != 0);
+		Instrumentations.time("test.time", start);
+
+		assertEquals(metrics.getCounter("test.count"), 5);
+		assertEquals(metrics.getCounter("test.unknown"), 0);
+		assertEquals(metrics.getHistogram("test.time").getCount(), 1);
+		assertSame(Instrumentations.find(MetricsInstrumentation.class),
+				metrics);
+	}
+
+	@Test
+	public void testHistogram() {
+		MetricsInstrumentation metrics = new MetricsInstrumentation();
+		for (int i = 1; i <= 100; i++) {
+			metrics.time("test.time", i * 1000);
+		}
+		Histogram histogram = metrics.getHistogram("test.time");
+		assertEquals(histogram.getCount(), 100);
+		assertEquals(histogram.getMinNanos(), 1000);
+		assertEquals(histogram.getMaxNanos(), 100000);
+		assertEquals(histogram.getMeanNanos(), 50500);
+		// exact to a factor of two
+		long p50 = histogram.getPercentileNanos(50);
+		assertTrue(p50 >= 50000 && p50 < 100000, "p50 = " + p50);
+		assertEquals(histogram.getPercentileNanos(100), 100000);
+	}
+
+	@Test
+	public void testConfigure() {
+		assertSame(Instrumentations.configure(null), Instrumentations.noOp());
+		assertSame(Instrumentations.configure("none"), Instrumentations.noOp());
+		assertTrue(Instrumentations.configure("metrics") instanceof MetricsInstrumentation);
+
+		Instrumentation composite = Instrumentations.configure("metrics, "
+				+ JfrInstrumentation.class.getName());
+		Instrumentations.set(composite);
+		List<Instrumentation> delegates = ((CompositeInstrumentation) composite)
+				.getDelegates();
+		assertEquals(delegates.size(), 2);
+		assertTrue(delegates.get(1) instanceof JfrInstrumentation);
+		assertSame(Instrumentations.find(MetricsInstrumentation.class),
+				delegates.get(0));
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testConfigureInvalid() {
+		Instrumentations.configure("java.lang.String");
+	}
+
+	@Test
+	public void testJfrEvents() throws Exception {
+		JfrInstrumentation jfr = new JfrInstrumentation();
+		assertFalse(jfr.isEnabled());
+		Instrumentations.set(jfr);
+		File dump = File.createTempFile("instrumentation", ".jfr");
+		Recording recording = new Recording();
+		try {
+			recording.enable(CountEvent.class);
+			recording.enable(TimeEvent.class);
+			recording.start();
+			assertTrue(jfr.isEnabled());
+			Instrumentations.count("test.count", 42);
+			Instrumentations.time("test.time", Instrumentations.startTime());
+			recording.stop();
+			recording.dump(dump.toPath());
+
+			int found = 0;
+			for (RecordedEvent event : RecordingFile.readAllEvents(dump
+					.toPath())) {
+				String type = event.getEventType().getName();
+				if ("org.javasnippets.utils.Count".equals(type)) {
+					assertEquals(event.getString("name"), "test.count");
+					assertEquals(event.getLong("delta"), 42);
+					found++;
+				} else if ("org.javasnippets.utils.Time".equals(type)) {
+					assertEquals(event.getString("name"), "test.time");
+					found++;
+				}
+			}
+			assertEquals(found, 2);
+		} finally {
+			recording.close();
+			dump.delete();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package org.javasnippets.utils.mvn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Added, removed and changed file-entries of two archives and the changed
+ * artefacts of their nested jars, see
+ * {@link ArtefactMetadataUtils#diffArchives(java.io.File, java.io.File)}.
+ *
+ * @author ckroeger
+ */
+public class ArchiveDiff {
+
+	private final List<String> added = new ArrayList<String>();
+	private final List<String> removed = new ArrayList<String>();
+	private final List<String> changed = new ArrayList<String>();
+	private final List<ArtefactChange> changedArtefacts = new ArrayList<ArtefactChange>();
+
+	ArchiveDiff() {
+		/* filled by ArtefactMetadataUtils */
+	}
+
+	void added(String entryName) {
+		added.add(entryName);
+	}
+
+	void removed(String entryName) {
+		removed.add(entryName);
+	}
+
+	void changed(String entryName) {
+		changed.add(entryName);
+	}
+
+	void changedArtefact(ArtefactChange change) {
+		changedArtefacts.add(change);
+	}
+
+	void sort() {
+		Collections.sort(added);
+		Collections.sort(removed);
+		Collections.sort(changed);
+		Collections.sort(changedArtefacts, new Comparator<ArtefactChange>() {
+			public int compare(ArtefactChange o1, ArtefactChange o2) {
+				return o1.getNewEntryName().compareTo(o2.getNewEntryName());
+			}
+		});
+	}
+
+	/**
+	 * Determines the entries only in the new archive.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public List<String> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	/**
+	 * Determines the entries only in the old archive.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public List<String> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Determines the entries in both archives with a different CRC32 or size.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public List<String> getChanged() {
+		return Collections.unmodifiableList(changed);
+	}
+
+	/**
+	 * Determines the nested jars whose artefact-metadata changed.
+	 *
+	 * @return the {@link ArtefactChange}s sorted by new entry-name (!NULL)
+	 */
+	public List<ArtefactChange> getChangedArtefacts() {
+		return Collections.unmodifiableList(changedArtefacts);
+	}
+
+	/**
+	 * Determines if the archives have the same content.
+	 *
+	 * @return true if nothing was added, removed or changed
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "ArchiveDiff [added=" + added + ", removed=" + removed
+				+ ", changed=" + changed + ", changedArtefacts="
+				+ changedArtefacts + "]";
+	}
+}
@@ -0,0 +1,94 @@
+package org.javasnippets.utils.mvn;
+
+/**
+ * Changed {@link MavenArtefactInfo} of a nested jar between two archives,
+ * see {@link ArchiveDiff}.
+ *
+ * @author ckroeger
+ */
+public class ArtefactChange {
+
+	private final String oldEntryName;
+	private final String newEntryName;
+	private final MavenArtefactInfo oldInfo;
+	private final MavenArtefactInfo newInfo;
+
+	ArtefactChange(String oldEntryName, MavenArtefactInfo oldInfo,
+			String newEntryName, MavenArtefactInfo newInfo) {
+		this.oldEntryName = oldEntryName;
+		this.oldInfo = oldInfo;
+		this.newEntryName = newEntryName;
+		this.newInfo = newInfo;
+	}
+
+	/**
+	 * Determines the name of the jar in the old archive.
+	 *
+	 * @return entry-name (!EMPTY)
+	 */
+	public String getOldEntryName() {
+		return oldEntryName;
+	}
+
+	/**
+	 * Determines the name of the jar in the new archive, it differs from the
+	 * old one if the file-name contains the version.
+	 *
+	 * @return entry-name (!EMPTY)
+	 */
+	public String getNewEntryName() {
+		return newEntryName;
+	}
+
+	/**
+	 * Determines the metadata in the old archive.
+	 *
+	 * @return the {@link MavenArtefactInfo} (!NULL)
+	 */
+	public MavenArtefactInfo getOldInfo() {
+		return oldInfo;
+	}
+
+	/**
+	 * Determines the metadata in the new archive.
+	 *
+	 * @return the {@link MavenArtefactInfo} (!NULL)
+	 */
+	public MavenArtefactInfo getNewInfo() {
+		return newInfo;
+	}
+
+	/**
+	 * Determines if the maven-version changed. If not, only the build
+	 * (build-version or svn-revision) changed, e.g. of a snapshot.
+	 *
+	 * @return true if the version changed
+	 */
+	public boolean isVersionChanged() {
+		return !equals(oldInfo.getVersion(), newInfo.getVersion());
+	}
+
+	/**
+	 * Determines if the metadata of the two infos differs in version,
+	 * build-version or svn-revision.
+	 */
+	static boolean isChanged(MavenArtefactInfo oldInfo,
+			MavenArtefactInfo newInfo) {
+		return !equals(oldInfo.getVersion(), newInfo.getVersion())
+				|| !equals(oldInfo.getBuildVersion(), newInfo.getBuildVersion())
+				|| oldInfo.getSvnRevision() != newInfo.getSvnRevision();
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	@Override
+	public String toString() {
+		return "ArtefactChange [" + newInfo.getGroupId() + ":"
+				+ newInfo.getArtefactId() + " " + oldInfo.getVersion()
+				+ " (r" + oldInfo.getSvnRevision() + ") -> "
+				+ newInfo.getVersion() + " (r" + newInfo.getSvnRevision()
+				+ ")]";
+	}
+}
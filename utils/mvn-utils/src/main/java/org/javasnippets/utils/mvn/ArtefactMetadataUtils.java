@@ -5,7 +5,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.jar.Attributes;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
@@ -13,6 +16,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipFile;
 
+import org.javasnippets.utils.metrics.Instrumentations;
+
 /**
  * Util to read Manifest-Metadata.
  * 
@@ -20,6 +25,12 @@ import java.util.zip.ZipFile;
  */
 public class ArtefactMetadataUtils {
 
+	private static final String METRIC_MANIFEST_PARSE = "mvn.manifest.parse";
+	private static final String METRIC_ARCHIVE_SCAN = "mvn.archive.scan";
+	private static final String METRIC_ENTRIES = "mvn.archive.entries";
+	private static final String METRIC_JARS = "mvn.archive.jars";
+	private static final String METRIC_ARCHIVE_DIFF = "mvn.archive.diff";
+
 	/**
 	 * Returns manifest {@link Attributes} of a {@link InputStream} of a single
 	 * Jar-File.
@@ -31,9 +42,11 @@ public class ArtefactMetadataUtils {
 	 */
 	public static Attributes getManifestAttributes(InputStream source)
 			throws IOException {
+		long start = Instrumentations.startTime();
 		@SuppressWarnings("resource")
 		JarInputStream jarStream = new JarInputStream(source);
 		Manifest mf = jarStream.getManifest();
+		Instrumentations.time(METRIC_MANIFEST_PARSE, start);
 		if (mf == null) {
 			return null;
 		}
@@ -53,6 +66,7 @@ public class ArtefactMetadataUtils {
 	 */
 	public static List<MavenArtefactInfo> listMavenArtefactInfos(File archive)
 			throws ZipException, IOException {
+		long start = Instrumentations.startTime();
 		List<MavenArtefactInfo> listOfArtefactInfos = new ArrayList<MavenArtefactInfo>();
 		ZipFile zipFile = new ZipFile(archive);
 		try {
@@ -60,10 +74,11 @@ public class ArtefactMetadataUtils {
 			while (entries.hasMoreElements()) {
 				ZipEntry zipEntry = entries.nextElement();
 				String name = zipEntry.getName();
-				// System.out.println(name);
+				Instrumentations.count(METRIC_ENTRIES, 1);
 				if (!name.endsWith(".jar")) {
 					continue;
 				}
+				Instrumentations.count(METRIC_JARS, 1);
 				InputStream inputStream = zipFile.getInputStream(zipEntry);
 				Attributes manifestAttributes = getManifestAttributes(inputStream);
 				if (manifestAttributes == null) {
@@ -76,10 +91,156 @@ public class ArtefactMetadataUtils {
 			}
 		} finally {
 			zipFile.close();
+			Instrumentations.time(METRIC_ARCHIVE_SCAN, start);
 		}
 		return listOfArtefactInfos;
 	}
 
+	/**
+	 * Compares two archives (e.g. two builds of a web-archive) by their
+	 * central-directories only: name, CRC32 and size of every file-entry. No
+	 * entry is inflated, except the manifests of nested jars that changed,
+	 * were added or were removed. Added and removed jars of the same artefact
+	 * (groupId and artefactId), e.g. after a version-change in the file-name,
+	 * are paired to an {@link ArtefactChange}.
+	 * 
+	 * @param oldArchive
+	 *            the old archive (!NULL)
+	 * @param newArchive
+	 *            the new archive (!NULL)
+	 * @return the {@link ArchiveDiff} (!NULL)
+	 * @throws ZipException
+	 * @throws IOException
+	 */
+	public static ArchiveDiff diffArchives(File oldArchive, File newArchive)
+			throws ZipException, IOException {
+		if (oldArchive == null || newArchive == null) {
+			throw new IllegalArgumentException();
+		}
+		long start = Instrumentations.startTime();
+		ArchiveDiff diff = new ArchiveDiff();
+		ZipFile oldZip = new ZipFile(oldArchive);
+		try {
+			ZipFile newZip = new ZipFile(newArchive);
+			try {
+				Map<String, ZipEntry> oldEntries = getFileEntries(oldZip);
+				Map<String, MavenArtefactInfo> addedJars = new LinkedHashMap<String, MavenArtefactInfo>();
+				Enumeration<? extends ZipEntry> entries = newZip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry newEntry = entries.nextElement();
+					if (newEntry.isDirectory()) {
+						continue;
+					}
+					String name = newEntry.getName();
+					ZipEntry oldEntry = oldEntries.remove(name);
+					if (oldEntry == null) {
+						diff.added(name);
+						MavenArtefactInfo info = readArtefactInfo(newZip,
+								newEntry);
+						if (info != null) {
+							addedJars.put(name, info);
+						}
+					} else if (oldEntry.getCrc() != newEntry.getCrc()
+							|| oldEntry.getSize() != newEntry.getSize()) {
+						diff.changed(name);
+						diffArtefact(diff, oldZip, oldEntry, newZip, newEntry);
+					}
+				}
+				for (ZipEntry oldEntry : oldEntries.values()) {
+					diff.removed(oldEntry.getName());
+					MavenArtefactInfo oldInfo = readArtefactInfo(oldZip,
+							oldEntry);
+					if (oldInfo != null) {
+						pairRemovedJar(diff, oldEntry.getName(), oldInfo,
+								addedJars);
+					}
+				}
+			} finally {
+				newZip.close();
+			}
+		} finally {
+			oldZip.close();
+			Instrumentations.time(METRIC_ARCHIVE_DIFF, start);
+		}
+		diff.sort();
+		return diff;
+	}
+
+	/**
+	 * Reads the file-entries of the central-directory by name.
+	 */
+	private static Map<String, ZipEntry> getFileEntries(ZipFile zipFile) {
+		Map<String, ZipEntry> result = new HashMap<String, ZipEntry>();
+		Enumeration<? extends ZipEntry> entries = zipFile.entries();
+		while (entries.hasMoreElements()) {
+			ZipEntry zipEntry = entries.nextElement();
+			if (!zipEntry.isDirectory()) {
+				result.put(zipEntry.getName(), zipEntry);
+			}
+		}
+		return result;
+	}
+
+	private static void diffArtefact(ArchiveDiff diff, ZipFile oldZip,
+			ZipEntry oldEntry, ZipFile newZip, ZipEntry newEntry)
+			throws IOException {
+		MavenArtefactInfo oldInfo = readArtefactInfo(oldZip, oldEntry);
+		if (oldInfo == null) {
+			return;
+		}
+		MavenArtefactInfo newInfo = readArtefactInfo(newZip, newEntry);
+		if (newInfo != null && ArtefactChange.isChanged(oldInfo, newInfo)) {
+			diff.changedArtefact(new ArtefactChange(oldEntry.getName(),
+					oldInfo, newEntry.getName(), newInfo));
+		}
+	}
+
+	private static void pairRemovedJar(ArchiveDiff diff, String oldName,
+			MavenArtefactInfo oldInfo, Map<String, MavenArtefactInfo> addedJars) {
+		if (oldInfo.getArtefactId() == null) {
+			return;
+		}
+		for (Map.Entry<String, MavenArtefactInfo> added : addedJars.entrySet()) {
+			MavenArtefactInfo newInfo = added.getValue();
+			if (oldInfo.getArtefactId().equals(newInfo.getArtefactId())
+					&& equals(oldInfo.getGroupId(), newInfo.getGroupId())) {
+				addedJars.remove(added.getKey());
+				if (ArtefactChange.isChanged(oldInfo, newInfo)) {
+					diff.changedArtefact(new ArtefactChange(oldName, oldInfo,
+							added.getKey(), newInfo));
+				}
+				return;
+			}
+		}
+	}
+
+	private static boolean equals(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/**
+	 * Reads the {@link MavenArtefactInfo} of a nested jar, only the manifest
+	 * at its beginning is inflated.
+	 * 
+	 * @return the {@link MavenArtefactInfo} or null if the entry is no jar or
+	 *         has no manifest
+	 */
+	private static MavenArtefactInfo readArtefactInfo(ZipFile zipFile,
+			ZipEntry zipEntry) throws IOException {
+		if (!zipEntry.getName().endsWith(".jar")) {
+			return null;
+		}
+		Instrumentations.count(METRIC_JARS, 1);
+		InputStream inputStream = zipFile.getInputStream(zipEntry);
+		try {
+			Attributes manifestAttributes = getManifestAttributes(inputStream);
+			return manifestAttributes == null ? null : new MavenArtefactInfo(
+					manifestAttributes);
+		} finally {
+			closeQuietly(inputStream);
+		}
+	}
+
 	/**
 	 * Closes the stream silently.
 	 * 
@@ -1,12 +1,20 @@
 package org.javasnippets.utils.mvn;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
 
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 public class ArtefactMetadataUtilsTest {
@@ -39,6 +47,98 @@ public class ArtefactMetadataUtilsTest {
 		}
 	}
 
+	@Test
+	public void testDiffArchives() throws IOException {
+		File oldArchive = File.createTempFile("old", ".war");
+		File newArchive = File.createTempFile("new", ".war");
+		try {
+			writeArchive(oldArchive, new Object[][] {
+					{ "index.html", "<html/>" },
+					{ "WEB-INF/web.xml", "<web-app/>" },
+					{ "WEB-INF/old.txt", "removed" },
+					{ "WEB-INF/lib/a-1.0.jar", jar("a", "1.0", "10") },
+					{ "WEB-INF/lib/b.jar", jar("b", "2.0", "10") },
+					{ "WEB-INF/lib/c.jar", jar("c", "3.0", "10") } });
+			writeArchive(newArchive, new Object[][] {
+					{ "index.html", "<html/>" },
+					{ "WEB-INF/web.xml", "<web-app version=\"3.0\"/>" },
+					{ "WEB-INF/new.txt", "added" },
+					{ "WEB-INF/lib/a-1.1.jar", jar("a", "1.1", "11") },
+					{ "WEB-INF/lib/b.jar", jar("b", "2.0", "12") },
+					{ "WEB-INF/lib/c.jar", jar("c", "3.0", "10") } });
+
+			ArchiveDiff diff = ArtefactMetadataUtils.diffArchives(oldArchive,
+					newArchive);
+
+			Assert.assertEquals(diff.getAdded(),
+					Arrays.asList("WEB-INF/lib/a-1.1.jar", "WEB-INF/new.txt"));
+			Assert.assertEquals(diff.getRemoved(),
+					Arrays.asList("WEB-INF/lib/a-1.0.jar", "WEB-INF/old.txt"));
+			Assert.assertEquals(diff.getChanged(),
+					Arrays.asList("WEB-INF/lib/b.jar", "WEB-INF/web.xml"));
+			List<ArtefactChange> artefacts = diff.getChangedArtefacts();
+			Assert.assertEquals(artefacts.size(), 2, artefacts.toString());
+
+			ArtefactChange a = artefacts.get(0);
+			Assert.assertEquals(a.getOldEntryName(), "WEB-INF/lib/a-1.0.jar");
+			Assert.assertEquals(a.getNewEntryName(), "WEB-INF/lib/a-1.1.jar");
+			Assert.assertTrue(a.isVersionChanged());
+			Assert.assertEquals(a.getNewInfo().getVersion(), "1.1");
+
+			ArtefactChange b = artefacts.get(1);
+			Assert.assertEquals(b.getNewEntryName(), "WEB-INF/lib/b.jar");
+			Assert.assertFalse(b.isVersionChanged());
+			Assert.assertEquals(b.getNewInfo().getSvnRevision(),
+					12);
+
+			Assert.assertTrue(ArtefactMetadataUtils.diffArchives(newArchive,
+					newArchive).isEmpty());
+		} finally {
+			oldArchive.delete();
+			newArchive.delete();
+		}
+	}
+
+	private void writeArchive(File file, Object[][] entries)
+			throws IOException {
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			for (Object[] entry : entries) {
+				ZipEntry zipEntry = new ZipEntry((String) entry[0]);
+				zipEntry.setTime(0);
+				out.putNextEntry(zipEntry);
+				if (entry[1] instanceof String) {
+					out.write(((String) entry[1]).getBytes("UTF-8"));
+				} else {
+					out.write((byte[]) entry[1]);
+				}
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private byte[] jar(String artefactId, String version, String revision)
+			throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes attributes = manifest.getMainAttributes();
+		attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		attributes.putValue("Implementation-Title", artefactId);
+		attributes.putValue("Implementation-Vendor-Id", "org.example");
+		attributes.putValue("Implementation-Version", version);
+		attributes.putValue("svn-revision", revision);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		JarOutputStream out = new JarOutputStream(bytes, manifest);
+		ZipEntry zipEntry = new ZipEntry("Main.class");
+		zipEntry.setTime(0);
+		out.putNextEntry(zipEntry);
+		out.write(artefactId.getBytes("UTF-8"));
+		out.closeEntry();
+		out.close();
+		return bytes.toByteArray();
+	}
+
 	private String getPathOfResource(String resourcePath) {
 		URL resource = ArtefactMetadataUtilsTest.class.getResource("/"+resourcePath);
 		String path = resource.getFile();
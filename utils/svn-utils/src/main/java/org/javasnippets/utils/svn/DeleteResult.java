@@ -0,0 +1,82 @@
+package org.javasnippets.utils.svn;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Result of a {@link DirectoryDeleter}-run.
+ *
+ * @author ckroeger
+ */
+public class DeleteResult {
+
+	private final Path path;
+	private final AtomicLong deleted = new AtomicLong();
+	private final ConcurrentLinkedQueue<Map.Entry<Path, IOException>> failures = new ConcurrentLinkedQueue<Map.Entry<Path, IOException>>();
+
+	DeleteResult(Path path) {
+		this.path = path;
+	}
+
+	void deleted() {
+		deleted.incrementAndGet();
+	}
+
+	void failed(Path failedPath, IOException failure) {
+		failures.add(new AbstractMap.SimpleImmutableEntry<Path, IOException>(
+				failedPath, failure));
+	}
+
+	/**
+	 * Determines the deleted path. For an asynchronous deletion this is the
+	 * path the directory was renamed to.
+	 *
+	 * @return the deleted path
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Determines the number of deleted files and directories.
+	 *
+	 * @return number of deleted entries
+	 */
+	public long getDeletedCount() {
+		return deleted.get();
+	}
+
+	/**
+	 * Determines the paths which could not be deleted or listed.
+	 *
+	 * @return path to failure (!NULL)
+	 */
+	public Map<Path, IOException> getFailures() {
+		Map<Path, IOException> result = new LinkedHashMap<Path, IOException>();
+		for (Map.Entry<Path, IOException> failure : failures) {
+			result.put(failure.getKey(), failure.getValue());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Determines if everything was deleted.
+	 *
+	 * @return true if there were no failures
+	 */
+	public boolean isSuccessful() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "DeleteResult [path=" + path + ", deleted=" + deleted
+				+ ", failures=" + getFailures().keySet() + "]";
+	}
+}
@@ -0,0 +1,242 @@
+package org.javasnippets.utils.svn;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Deletes directory-trees with NIO, removing subtrees in parallel. Symbolic
+ * links are deleted, not followed. Every path which can not be listed or
+ * deleted is reported in the {@link DeleteResult} instead of being ignored.
+ *
+ * @author ckroeger
+ */
+public class DirectoryDeleter {
+
+	private static final DirectoryDeleter DEFAULT = new DirectoryDeleter(
+			Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+	private final ForkJoinPool pool;
+	private final ExecutorService background;
+
+	/**
+	 * Creates a new deleter.
+	 *
+	 * @param parallelism
+	 *            number of threads deleting in parallel (> 0), may exceed the
+	 *            number of processors as deletion mostly waits for I/O
+	 */
+	public DirectoryDeleter(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be > 0");
+		}
+		this.pool = new ForkJoinPool(parallelism);
+		this.background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "directory-deleter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Determines the shared default deleter.
+	 *
+	 * @return the default {@link DirectoryDeleter}
+	 */
+	public static DirectoryDeleter getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Deletes the given file or directory-tree and waits until it is done.
+	 *
+	 * @param path
+	 *            path to delete (!NULL), a missing path is no failure
+	 * @return the {@link DeleteResult}
+	 */
+	public DeleteResult delete(Path path) {
+		if (path == null) {
+			throw new IllegalArgumentException();
+		}
+		DeleteResult result = new DeleteResult(path);
+		if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+			pool.invoke(new DeleteTask(this, path, result));
+		} else {
+			deleteEntry(path, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Renames the given directory aside and deletes it in the background. The
+	 * path is free for reuse when this method returns. If the directory can
+	 * not be renamed it is deleted synchronously.
+	 *
+	 * @param path
+	 *            path to delete (!NULL)
+	 * @return {@link Future} of the {@link DeleteResult} of the renamed path
+	 */
+	public Future<DeleteResult> deleteAsync(Path path) {
+		if (path == null) {
+			throw new IllegalArgumentException();
+		}
+		final Path aside;
+		try {
+			aside = renameAside(path);
+		} catch (IOException e) {
+			FutureTask<DeleteResult> done = new FutureTask<DeleteResult>(
+					newDeleteCall(path));
+			done.run();
+			return done;
+		}
+		return background.submit(newDeleteCall(aside));
+	}
+
+	private Callable<DeleteResult> newDeleteCall(final Path path) {
+		return new Callable<DeleteResult>() {
+			public DeleteResult call() {
+				return delete(path);
+			}
+		};
+	}
+
+	/**
+	 * Moves the path to a unique sibling, the rename stays on the same
+	 * file-system and is therefore cheap.
+	 */
+	private static Path renameAside(Path path) throws IOException {
+		Path absolute = path.toAbsolutePath();
+		Path parent = absolute.getParent();
+		if (parent == null) {
+			throw new IOException("can not rename root: " + path);
+		}
+		Path aside = parent.resolve("." + absolute.getFileName()
+				+ ".deleting-" + System.nanoTime());
+		try {
+			return Files.move(absolute, aside, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			return Files.move(absolute, aside);
+		}
+	}
+
+	/**
+	 * Deletes a single file, link or empty directory.
+	 *
+	 * @param path
+	 *            the path to delete
+	 * @throws IOException
+	 *             if the path can not be deleted
+	 */
+	void deletePath(Path path) throws IOException {
+		Files.delete(path);
+	}
+
+	private void deleteEntry(Path path, DeleteResult result) {
+		try {
+			deletePath(path);
+			result.deleted();
+		} catch (NoSuchFileException e) {
+			/* already gone */
+		} catch (IOException e) {
+			if (e instanceof AccessDeniedException && retryWritable(path)) {
+				result.deleted();
+				return;
+			}
+			result.failed(path, e);
+		}
+	}
+
+	/**
+	 * Read-only files (e.g. the pristine copies in .svn) can not be deleted on
+	 * some platforms, retries after making it writable.
+	 */
+	private static boolean retryWritable(Path path) {
+		try {
+			if (!path.toFile().setWritable(true)) {
+				return false;
+			}
+			Files.delete(path);
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Deletes the content of one directory, forking a task per
+	 * sub-directory, and then the directory itself.
+	 */
+	private static final class DeleteTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final DirectoryDeleter deleter;
+		private final Path directory;
+		private final DeleteResult result;
+
+		DeleteTask(DirectoryDeleter deleter, Path directory,
+				DeleteResult result) {
+			this.deleter = deleter;
+			this.directory = directory;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute() {
+			List<DeleteTask> subTasks = new ArrayList<DeleteTask>();
+			DirectoryStream<Path> entries = null;
+			try {
+				entries = Files.newDirectoryStream(directory);
+				for (Path entry : entries) {
+					if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+						DeleteTask subTask = new DeleteTask(deleter, entry,
+								result);
+						subTask.fork();
+						subTasks.add(subTask);
+					} else {
+						deleter.deleteEntry(entry, result);
+					}
+				}
+			} catch (NoSuchFileException e) {
+				return;
+			} catch (IOException e) {
+				result.failed(directory, e);
+			} finally {
+				closeQuietly(entries);
+			}
+			for (DeleteTask subTask : subTasks) {
+				subTask.join();
+			}
+			deleter.deleteEntry(directory, result);
+		}
+
+		private static void closeQuietly(DirectoryStream<Path> entries) {
+			if (entries == null) {
+				return;
+			}
+			try {
+				entries.close();
+			} catch (IOException e) {
+				/* ignore */
+			}
+		}
+	}
+}
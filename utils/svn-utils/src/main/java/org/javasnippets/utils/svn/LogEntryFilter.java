@@ -0,0 +1,91 @@
+package org.javasnippets.utils.svn;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * Receiver which applies the path-filter of a {@link SVNLogQuery} while the
+ * entries arrive and cancels the log-operation when the limit is reached.
+ *
+ * @author ckroeger
+ */
+class LogEntryFilter implements ISvnObjectReceiver<SVNLogEntry> {
+
+	private final SVNLogQuery query;
+	private final long limit;
+	private final ISvnObjectReceiver<SVNLogEntry> receiver;
+
+	private long received = 0;
+	private long delivered = 0;
+	private long lastRevision = -1;
+
+	/**
+	 * Creates a new filter.
+	 *
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @param limit
+	 *            maximum number of delivered entries, 0 for unlimited
+	 * @param receiver
+	 *            receiver of the matching entries (!NULL)
+	 */
+	LogEntryFilter(SVNLogQuery query, long limit,
+			ISvnObjectReceiver<SVNLogEntry> receiver) {
+		this.query = query;
+		this.limit = limit;
+		this.receiver = receiver;
+	}
+
+	public void receive(SvnTarget target, SVNLogEntry logEntry)
+			throws SVNException {
+		received++;
+		lastRevision = logEntry.getRevision();
+		if (!query.matches(logEntry)) {
+			return;
+		}
+		delivered++;
+		receiver.receive(target, logEntry);
+		if (isLimitReached()) {
+			throw new SVNCancelException();
+		}
+	}
+
+	/**
+	 * Determines if the limit of delivered entries is reached.
+	 *
+	 * @return true if no more entries are wanted
+	 */
+	boolean isLimitReached() {
+		return limit > 0 && delivered >= limit;
+	}
+
+	/**
+	 * Determines the number of received entries, including filtered ones.
+	 *
+	 * @return number of received entries
+	 */
+	long getReceived() {
+		return received;
+	}
+
+	/**
+	 * Determines the number of delivered entries.
+	 *
+	 * @return number of delivered entries
+	 */
+	long getDelivered() {
+		return delivered;
+	}
+
+	/**
+	 * Determines the revision of the last received entry.
+	 *
+	 * @return last revision or -1 if nothing was received
+	 */
+	long getLastRevision() {
+		return lastRevision;
+	}
+}
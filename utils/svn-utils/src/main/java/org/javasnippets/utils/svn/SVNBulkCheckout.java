@@ -0,0 +1,347 @@
+package org.javasnippets.utils.svn;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+
+/**
+ * Runs checkouts, updates or exports of many modules in parallel. The total
+ * number of concurrent jobs and the number of concurrent jobs per
+ * repository are bounded. Jobs of a repository which has reached its limit
+ * wait in a queue of that repository without occupying a thread, so the jobs
+ * of other repositories are not held up.
+ *
+ * @author ckroeger
+ */
+public class SVNBulkCheckout {
+
+	/** Default number of concurrent jobs. */
+	public static final int DEFAULT_THREADS = 8;
+
+	private int threads = DEFAULT_THREADS;
+	private int maxPerRepository = SVNClient.DEFAULT_MAX_SESSIONS;
+	private boolean failFast = false;
+	private SVNBulkMode mode = SVNBulkMode.CHECKOUT;
+	private SVNBulkListener listener = null;
+	private ISVNAuthenticationManager authenticationManager = null;
+
+	/**
+	 * Sets the maximum number of concurrent jobs.
+	 *
+	 * @param threads
+	 *            number of concurrent jobs (> 0)
+	 */
+	public void setThreads(int threads) {
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads must be > 0");
+		}
+		this.threads = threads;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent jobs per repository-root.
+	 *
+	 * @param maxPerRepository
+	 *            number of concurrent jobs per repository-root (> 0)
+	 */
+	public void setMaxPerRepository(int maxPerRepository) {
+		if (maxPerRepository <= 0) {
+			throw new IllegalArgumentException("maxPerRepository must be > 0");
+		}
+		this.maxPerRepository = maxPerRepository;
+	}
+
+	/**
+	 * Sets the error-mode. With fail-fast no further jobs are started after
+	 * the first failure, running jobs are finished and the first failure is
+	 * thrown. Otherwise all jobs run and the failures are collected in the
+	 * {@link SVNBulkResult}.
+	 *
+	 * @param failFast
+	 *            true for fail-fast, false to collect all failures
+	 */
+	public void setFailFast(boolean failFast) {
+		this.failFast = failFast;
+	}
+
+	/**
+	 * Sets the operation run for every job.
+	 *
+	 * @param mode
+	 *            the {@link SVNBulkMode} (!NULL)
+	 */
+	public void setMode(SVNBulkMode mode) {
+		if (mode == null) {
+			throw new IllegalArgumentException();
+		}
+		this.mode = mode;
+	}
+
+	/**
+	 * Sets the progress-callback. A job is classified before the listener is
+	 * notified, so an exception of the listener does not change the result.
+	 *
+	 * @param listener
+	 *            the {@link SVNBulkListener} (NULLABLE)
+	 */
+	public void setListener(SVNBulkListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Sets the authentication for all jobs.
+	 *
+	 * @param authenticationManager
+	 *            authentication or null for SVNKit-defaults
+	 */
+	public void setAuthenticationManager(
+			ISVNAuthenticationManager authenticationManager) {
+		this.authenticationManager = authenticationManager;
+	}
+
+	/**
+	 * Runs the given jobs and waits until all are finished.
+	 *
+	 * @param jobs
+	 *            the jobs (!NULL)
+	 * @return the result of all jobs
+	 * @throws SVNException
+	 *             the first failure in fail-fast mode, a
+	 *             {@link SVNCancelException} if interrupted while waiting
+	 */
+	public SVNBulkResult run(List<SVNCheckoutJob> jobs) throws SVNException {
+		if (jobs == null) {
+			throw new IllegalArgumentException();
+		}
+		SVNBulkResult result = new SVNBulkResult();
+		if (jobs.isEmpty()) {
+			return result;
+		}
+		SVNClient client = new SVNClient(authenticationManager,
+				maxPerRepository, SVNClient.DEFAULT_IDLE_TIMEOUT_MILLIS);
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(threads, jobs.size()), new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "svn-bulk-"
+								+ count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		BulkRun run = new BulkRun(client, executor, result, jobs.size());
+		try {
+			for (SVNCheckoutJob job : jobs) {
+				run.submit(job);
+			}
+			run.await();
+		} catch (InterruptedException e) {
+			run.aborted.set(true);
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new SVNCancelException();
+		} finally {
+			executor.shutdown();
+			client.close();
+		}
+		if (failFast && !result.getFailed().isEmpty()) {
+			throw result.getFailed().values().iterator().next();
+		}
+		return result;
+	}
+
+	private void runJob(SVNClient client, SVNCheckoutJob job)
+			throws SVNException {
+		switch (mode) {
+		case EXPORT:
+			client.export(job.getTargetDirectory(), job.getUrl(),
+					job.getRevision());
+			break;
+		case SYNC:
+			client.syncWorkingCopy(job.getTargetDirectory(), job.getUrl(),
+					job.getRevision(), false);
+			break;
+		default:
+			SVNUtils.checkAndDeleteIfExists(job.getTargetDirectory()
+					.getPath());
+			client.checkout(job.getTargetDirectory(), job.getUrl(),
+					job.getRevision());
+		}
+	}
+
+	/**
+	 * State of one {@link SVNBulkCheckout#run(List)}. A job gets a thread only
+	 * if its repository is below the limit, otherwise it waits in the queue of
+	 * its repository and is started when a job of that repository finishes.
+	 */
+	private final class BulkRun {
+
+		private final SVNClient client;
+		private final ExecutorService executor;
+		private final SVNBulkResult result;
+		private final int total;
+		private final AtomicBoolean aborted = new AtomicBoolean(false);
+		private final AtomicInteger finished = new AtomicInteger();
+		private final CountDownLatch done;
+
+		/** Running jobs per repository-root, guarded by this. */
+		private final Map<String, Integer> running = new HashMap<String, Integer>();
+		/** Waiting jobs per repository-root, guarded by this. */
+		private final Map<String, Deque<SVNCheckoutJob>> waiting = new HashMap<String, Deque<SVNCheckoutJob>>();
+
+		BulkRun(SVNClient client, ExecutorService executor,
+				SVNBulkResult result, int total) {
+			this.client = client;
+			this.executor = executor;
+			this.result = result;
+			this.total = total;
+			this.done = new CountDownLatch(total);
+		}
+
+		void submit(SVNCheckoutJob job) {
+			if (aborted.get()) {
+				skipped(job);
+				return;
+			}
+			String root;
+			try {
+				root = client.getRepositoryRoot(job.getUrl());
+			} catch (SVNException e) {
+				failed(job, e);
+				return;
+			}
+			synchronized (this) {
+				Integer count = running.get(root);
+				if (count == null || count < maxPerRepository) {
+					running.put(root, count == null ? 1 : count + 1);
+					start(root, job);
+				} else {
+					Deque<SVNCheckoutJob> queue = waiting.get(root);
+					if (queue == null) {
+						queue = new ArrayDeque<SVNCheckoutJob>();
+						waiting.put(root, queue);
+					}
+					queue.add(job);
+				}
+			}
+		}
+
+		void await() throws InterruptedException {
+			done.await();
+		}
+
+		/**
+		 * Starts a job on a thread, guarded by this.
+		 */
+		private void start(final String root, final SVNCheckoutJob job) {
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							execute(job);
+						} finally {
+							next(root);
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				// interrupted meanwhile
+				skipped(job);
+			}
+		}
+
+		/**
+		 * Starts the next waiting job of the repository on the thread of
+		 * the finished one.
+		 */
+		private synchronized void next(String root) {
+			Deque<SVNCheckoutJob> queue = waiting.get(root);
+			SVNCheckoutJob job = queue == null ? null : queue.poll();
+			if (job != null) {
+				start(root, job);
+			} else {
+				running.put(root, running.get(root) - 1);
+			}
+		}
+
+		private void execute(SVNCheckoutJob job) {
+			if (aborted.get()) {
+				skipped(job);
+				return;
+			}
+			long start = System.currentTimeMillis();
+			SVNException failure = null;
+			try {
+				if (listener != null) {
+					listener.jobStarted(job);
+				}
+				runJob(client, job);
+			} catch (SVNException e) {
+				failure = e;
+			} catch (RuntimeException e) {
+				// e.g. a target-directory which can not be deleted
+				SVNErrorMessage message = SVNErrorMessage.create(
+						SVNErrorCode.UNKNOWN, job + ": " + e.getMessage());
+				failure = new SVNException(message, e);
+			}
+			if (failure != null) {
+				failed(job, failure);
+				return;
+			}
+			// classified before the listener is called, which may throw
+			result.addSucceeded(job);
+			int finishedJobs = finished.incrementAndGet();
+			try {
+				if (listener != null) {
+					listener.jobFinished(job, System.currentTimeMillis()
+							- start, finishedJobs, total);
+				}
+			} finally {
+				done.countDown();
+			}
+		}
+
+		private void failed(SVNCheckoutJob job, SVNException failure) {
+			result.addFailed(job, failure);
+			if (failFast) {
+				aborted.set(true);
+			}
+			int finishedJobs = finished.incrementAndGet();
+			try {
+				if (listener != null) {
+					listener.jobFailed(job, failure, finishedJobs, total);
+				}
+			} finally {
+				done.countDown();
+			}
+		}
+
+		private void skipped(SVNCheckoutJob job) {
+			result.addSkipped(job);
+			int finishedJobs = finished.incrementAndGet();
+			try {
+				if (listener != null) {
+					listener.jobSkipped(job, finishedJobs, total);
+				}
+			} finally {
+				done.countDown();
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.javasnippets.utils.svn;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Progress-callback of a {@link SVNBulkCheckout}. The methods are called from
+ * the worker-threads and must be thread-safe.
+ *
+ * @author ckroeger
+ */
+public interface SVNBulkListener {
+
+	/**
+	 * Called before a job starts.
+	 *
+	 * @param job
+	 *            the started job
+	 */
+	void jobStarted(SVNCheckoutJob job);
+
+	/**
+	 * Called after a job finished successfully.
+	 *
+	 * @param job
+	 *            the finished job
+	 * @param millis
+	 *            duration of the job
+	 * @param finished
+	 *            number of finished jobs, including failed and skipped ones
+	 * @param total
+	 *            number of all jobs
+	 */
+	void jobFinished(SVNCheckoutJob job, long millis, int finished, int total);
+
+	/**
+	 * Called after a job failed.
+	 *
+	 * @param job
+	 *            the failed job
+	 * @param failure
+	 *            the failure
+	 * @param finished
+	 *            number of finished jobs, including failed and skipped ones
+	 * @param total
+	 *            number of all jobs
+	 */
+	void jobFailed(SVNCheckoutJob job, SVNException failure, int finished,
+			int total);
+
+	/**
+	 * Called instead of starting a job after a failure in fail-fast mode.
+	 *
+	 * @param job
+	 *            the skipped job
+	 * @param finished
+	 *            number of finished jobs, including failed and skipped ones
+	 * @param total
+	 *            number of all jobs
+	 */
+	void jobSkipped(SVNCheckoutJob job, int finished, int total);
+}
@@ -0,0 +1,18 @@
+package org.javasnippets.utils.svn;
+
+/**
+ * Operation a {@link SVNBulkCheckout} runs for every job.
+ *
+ * @author ckroeger
+ */
+public enum SVNBulkMode {
+
+	/** Deletes the target-directory and checks out, like SVNUtils.checkout. */
+	CHECKOUT,
+
+	/** Updates or switches existing working copies, see SVNSyncResult. */
+	SYNC,
+
+	/** Exports without administrative .svn-metadata. */
+	EXPORT
+}
@@ -0,0 +1,79 @@
+package org.javasnippets.utils.svn;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.tmatesoft.svn.core.SVNException;
+
+/**
+ * Result of a {@link SVNBulkCheckout}.
+ *
+ * @author ckroeger
+ */
+public class SVNBulkResult {
+
+	private final List<SVNCheckoutJob> succeeded = new ArrayList<SVNCheckoutJob>();
+	private final Map<SVNCheckoutJob, SVNException> failed = new LinkedHashMap<SVNCheckoutJob, SVNException>();
+	private final List<SVNCheckoutJob> skipped = new ArrayList<SVNCheckoutJob>();
+
+	synchronized void addSucceeded(SVNCheckoutJob job) {
+		succeeded.add(job);
+	}
+
+	synchronized void addFailed(SVNCheckoutJob job, SVNException failure) {
+		failed.put(job, failure);
+	}
+
+	synchronized void addSkipped(SVNCheckoutJob job) {
+		skipped.add(job);
+	}
+
+	/**
+	 * Determines the successful jobs in order of completion.
+	 *
+	 * @return successful jobs (!NULL)
+	 */
+	public synchronized List<SVNCheckoutJob> getSucceeded() {
+		return Collections.unmodifiableList(new ArrayList<SVNCheckoutJob>(
+				succeeded));
+	}
+
+	/**
+	 * Determines the failed jobs with their failure in order of completion.
+	 *
+	 * @return failed jobs (!NULL)
+	 */
+	public synchronized Map<SVNCheckoutJob, SVNException> getFailed() {
+		return Collections
+				.unmodifiableMap(new LinkedHashMap<SVNCheckoutJob, SVNException>(
+						failed));
+	}
+
+	/**
+	 * Determines the jobs not started because of a fail-fast abort.
+	 *
+	 * @return skipped jobs (!NULL)
+	 */
+	public synchronized List<SVNCheckoutJob> getSkipped() {
+		return Collections.unmodifiableList(new ArrayList<SVNCheckoutJob>(
+				skipped));
+	}
+
+	/**
+	 * Determines if all jobs succeeded.
+	 *
+	 * @return true if no job failed or was skipped
+	 */
+	public synchronized boolean isSuccessful() {
+		return failed.isEmpty() && skipped.isEmpty();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SVNBulkResult [succeeded=" + succeeded.size() + ", failed="
+				+ failed.keySet() + ", skipped=" + skipped.size() + "]";
+	}
+}
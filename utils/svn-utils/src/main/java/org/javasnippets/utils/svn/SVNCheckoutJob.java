@@ -0,0 +1,71 @@
+package org.javasnippets.utils.svn;
+
+import java.io.File;
+
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+
+/**
+ * A single job of a {@link SVNBulkCheckout}.
+ *
+ * @author ckroeger
+ */
+public class SVNCheckoutJob {
+
+	private final SVNURL url;
+	private final SVNRevision revision;
+	private final File targetDirectory;
+
+	/**
+	 * Creates a new job.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param targetDirectory
+	 *            local target-directory (!NULL)
+	 */
+	public SVNCheckoutJob(SVNURL url, SVNRevision revision,
+			File targetDirectory) {
+		if (url == null || targetDirectory == null) {
+			throw new IllegalArgumentException();
+		}
+		this.url = url;
+		this.revision = revision == null ? SVNRevision.HEAD : revision;
+		this.targetDirectory = targetDirectory;
+	}
+
+	/**
+	 * Determines the svn-repository-url.
+	 *
+	 * @return svn-repository-url
+	 */
+	public SVNURL getUrl() {
+		return url;
+	}
+
+	/**
+	 * Determines the revision.
+	 *
+	 * @return the revision (!NULL)
+	 */
+	public SVNRevision getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Determines the local target-directory.
+	 *
+	 * @return the target-directory
+	 */
+	public File getTargetDirectory() {
+		return targetDirectory;
+	}
+
+	@Override
+	public String toString() {
+		return "SVNCheckoutJob [url=" + url + ", revision=" + revision
+				+ ", targetDirectory=" + targetDirectory + "]";
+	}
+}
@@ -0,0 +1,569 @@
+package org.javasnippets.utils.svn;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.ISVNAuthenticationManager;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * Long-lived, thread-safe SVN-client. Keeps a bounded pool of
+ * {@link SvnOperationFactory}-sessions per repository-root, so repeated calls
+ * reuse the opened connections, authentication and negotiated capabilities
+ * instead of setting them up for every call. The root of an url is asked from
+ * the repository once and then known for all urls below it. Sessions idle
+ * longer than the idle-timeout are disposed. Every operation is timed, see
+ * {@link #getStatistics()}.
+ *
+ * @author ckroeger
+ */
+public class SVNClient implements Closeable {
+
+	/** Default number of sessions per repository-root. */
+	public static final int DEFAULT_MAX_SESSIONS = 4;
+
+	/** Default idle-timeout of a session. */
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 60 * 1000;
+
+	private static final String METRIC_SESSION_REUSED = "svn.session.reused";
+	private static final String METRIC_SESSION_CREATED = "svn.session.created";
+
+	private final ISVNAuthenticationManager authenticationManager;
+	private final int maxSessionsPerRoot;
+	private final long idleTimeoutMillis;
+
+	private final ConcurrentMap<String, SessionPool> pools = new ConcurrentHashMap<String, SessionPool>();
+	private final Set<String> repositoryRoots = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Object rootLock = new Object();
+	private final ConcurrentMap<String, SVNOperationStatistics> statistics = new ConcurrentHashMap<String, SVNOperationStatistics>();
+	private final AtomicLong createdSessions = new AtomicLong();
+	private final ScheduledExecutorService evictor;
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a client with default authentication and pool-settings.
+	 */
+	public SVNClient() {
+		this(null, DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * Creates a new client.
+	 *
+	 * @param authenticationManager
+	 *            authentication for all sessions or null for SVNKit-defaults
+	 * @param maxSessionsPerRoot
+	 *            maximum number of concurrent sessions per repository-root
+	 *            (> 0)
+	 * @param idleTimeoutMillis
+	 *            idle sessions older than this are disposed (> 0)
+	 */
+	public SVNClient(ISVNAuthenticationManager authenticationManager,
+			int maxSessionsPerRoot, long idleTimeoutMillis) {
+		if (maxSessionsPerRoot <= 0 || idleTimeoutMillis <= 0) {
+			throw new IllegalArgumentException();
+		}
+		this.authenticationManager = authenticationManager;
+		this.maxSessionsPerRoot = maxSessionsPerRoot;
+		this.idleTimeoutMillis = idleTimeoutMillis;
+		this.evictor = Executors
+				.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "svn-session-evictor");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		long period = Math.max(idleTimeoutMillis / 2, 10);
+		this.evictor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				evictIdleSessions();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Executes an operation with a pooled session for the given url. Blocks
+	 * while all sessions of the repository-root are in use.
+	 *
+	 * @param url
+	 *            svn-repository-url the operation works on (!NULL)
+	 * @param operationName
+	 *            name for the statistics (!EMPTY)
+	 * @param operation
+	 *            the {@link SVNOperation} (!NULL)
+	 * @return result of the operation
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures, a
+	 *             {@link SVNCancelException} if interrupted while waiting
+	 */
+	public <T> T execute(SVNURL url, String operationName,
+			SVNOperation<T> operation) throws SVNException {
+		if (url == null || operationName == null || operation == null) {
+			throw new IllegalArgumentException();
+		}
+		if (closed) {
+			throw new IllegalStateException("client is closed");
+		}
+		SessionPool pool = getPool(getRepositoryRoot(url));
+		Session session = pool.borrow();
+		long start = System.nanoTime();
+		boolean failed = true;
+		try {
+			T result = operation.run(session.factory);
+			failed = false;
+			return result;
+		} finally {
+			getStatistics(operationName).record(System.nanoTime() - start,
+					failed);
+			// a failed session may hold a broken connection
+			pool.release(session, failed);
+		}
+	}
+
+	/**
+	 * Does a SVN-checkout, see
+	 * {@link SVNUtils#checkout(File, SVNURL, SVNRevision)}.
+	 *
+	 * @param workingCopyDirectory
+	 *            {@link File} of local directory for checkout
+	 * @param url
+	 *            svn-repository-url
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public void checkout(final File workingCopyDirectory, final SVNURL url,
+			final SVNRevision revision) throws SVNException {
+		execute(url, "checkout", new SVNOperation<Void>() {
+			public Void run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				SVNUtils.checkout(svnOperationFactory, workingCopyDirectory,
+						url, revision);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Does a SVN-export, see
+	 * {@link SVNUtils#export(File, SVNURL, SVNRevision)}.
+	 *
+	 * @param exportDirectory
+	 *            {@link File} of local directory for the export
+	 * @param url
+	 *            svn-repository-url
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public void export(final File exportDirectory, final SVNURL url,
+			final SVNRevision revision) throws SVNException {
+		execute(url, "export", new SVNOperation<Void>() {
+			public Void run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				SVNUtils.export(svnOperationFactory, exportDirectory, url,
+						revision);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Brings the working copy to the given revision of the svn-url, see
+	 * {@link SVNUtils#syncWorkingCopy(File, SVNURL, SVNRevision, boolean)}.
+	 *
+	 * @param workingCopyDirectory
+	 *            {@link File} of local directory of the working copy (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param revert
+	 *            true to clean up and revert local changes and to remove
+	 *            unversioned files before the update
+	 * @return what was done to the working copy
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public SVNSyncResult syncWorkingCopy(final File workingCopyDirectory,
+			final SVNURL url, final SVNRevision revision, final boolean revert)
+			throws SVNException {
+		return execute(url, "sync", new SVNOperation<SVNSyncResult>() {
+			public SVNSyncResult run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				return SVNUtils.syncWorkingCopy(svnOperationFactory,
+						workingCopyDirectory, url, revision, revert);
+			}
+		});
+	}
+
+	/**
+	 * Streams log-entries to the receiver, see
+	 * {@link SVNUtils#svnLog(SVNURL, SVNLogQuery, ISvnObjectReceiver)}.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @param receiver
+	 *            receiver of the entries matching the path-filter (!NULL)
+	 * @return number of delivered entries
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public long svnLog(final SVNURL url, final SVNLogQuery query,
+			final ISvnObjectReceiver<SVNLogEntry> receiver)
+			throws SVNException {
+		return execute(url, "log", new SVNOperation<Long>() {
+			public Long run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				return SVNUtils.svnLog(svnOperationFactory, url, query,
+						receiver);
+			}
+		});
+	}
+
+	/**
+	 * Determines the latest revision of the repository of the given url.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @return the HEAD-revision
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public long getLatestRevision(final SVNURL url) throws SVNException {
+		return execute(url, "latest-revision", new SVNOperation<Long>() {
+			public Long run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				return SVNUtils.getLatestRevision(svnOperationFactory, url);
+			}
+		});
+	}
+
+	/**
+	 * Determines the info of an url.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @return the {@link SvnInfo}
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public SvnInfo info(final SVNURL url, final SVNRevision revision)
+			throws SVNException {
+		return execute(url, "info", new SVNOperation<SvnInfo>() {
+			public SvnInfo run(SvnOperationFactory svnOperationFactory)
+					throws SVNException {
+				SVNRevision rev = revision == null ? SVNRevision.HEAD
+						: revision;
+				SvnGetInfo getInfo = svnOperationFactory.createGetInfo();
+				getInfo.setSingleTarget(SvnTarget.fromURL(url, rev));
+				return getInfo.run();
+			}
+		});
+	}
+
+	/**
+	 * Determines the timing-metrics of all executed operations.
+	 *
+	 * @return operation-name to statistics, sorted by name (!NULL)
+	 */
+	public Map<String, SVNOperationStatistics> getStatistics() {
+		return Collections
+				.unmodifiableMap(new TreeMap<String, SVNOperationStatistics>(
+						statistics));
+	}
+
+	/**
+	 * Determines the number of sessions created since this client was created.
+	 *
+	 * @return number of created sessions
+	 */
+	public long getCreatedSessionCount() {
+		return createdSessions.get();
+	}
+
+	/**
+	 * Determines the number of currently idle sessions.
+	 *
+	 * @return number of idle sessions
+	 */
+	public int getIdleSessionCount() {
+		int idle = 0;
+		for (SessionPool pool : pools.values()) {
+			idle += pool.getIdleCount();
+		}
+		return idle;
+	}
+
+	/**
+	 * Disposes all idle sessions. Sessions in use are disposed when their
+	 * operation finishes.
+	 */
+	public void close() {
+		closed = true;
+		evictor.shutdownNow();
+		for (SessionPool pool : pools.values()) {
+			pool.evict(Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Disposes sessions idle longer than the idle-timeout.
+	 */
+	void evictIdleSessions() {
+		evictIdleSessions(System.currentTimeMillis());
+	}
+
+	/**
+	 * Disposes sessions idle longer than the idle-timeout at the given time.
+	 *
+	 * @param now
+	 *            the current time in milliseconds
+	 */
+	void evictIdleSessions(long now) {
+		long oldestAllowed = now - idleTimeoutMillis;
+		for (SessionPool pool : pools.values()) {
+			pool.evict(oldestAllowed);
+		}
+	}
+
+	private SVNOperationStatistics getStatistics(String operationName) {
+		SVNOperationStatistics stats = statistics.get(operationName);
+		if (stats == null) {
+			stats = new SVNOperationStatistics(operationName);
+			SVNOperationStatistics existing = statistics.putIfAbsent(
+					operationName, stats);
+			if (existing != null) {
+				stats = existing;
+			}
+		}
+		return stats;
+	}
+
+	private SessionPool getPool(String key) {
+		SessionPool pool = pools.get(key);
+		if (pool == null) {
+			pool = new SessionPool();
+			SessionPool existing = pools.putIfAbsent(key, pool);
+			if (existing != null) {
+				pool = existing;
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * Determines the repository-root of an url, which is the key of its
+	 * session-pool. The repository is asked only for the first url of an
+	 * unknown root, the session which asked is kept for the next operation.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @return the repository-root
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	String getRepositoryRoot(SVNURL url) throws SVNException {
+		String root = findRepositoryRoot(url);
+		if (root != null) {
+			return root;
+		}
+		// serialized, so concurrent calls ask the repository only once
+		synchronized (rootLock) {
+			root = findRepositoryRoot(url);
+			if (root == null) {
+				Session session = createSession();
+				root = resolveRepositoryRoot(session, url);
+				if (repositoryRoots.contains(root)) {
+					// an url of a known root in another spelling
+					session.factory.dispose();
+				} else {
+					getPool(root).addIdle(session);
+					repositoryRoots.add(root);
+				}
+			}
+			return root;
+		}
+	}
+
+	/**
+	 * Determines the known repository-root of an url.
+	 *
+	 * @return the longest known root the url is in or null if none is known
+	 */
+	private String findRepositoryRoot(SVNURL url) {
+		String urlString = url.toString();
+		String found = null;
+		for (String root : repositoryRoots) {
+			if ((urlString.equals(root) || urlString.startsWith(root + "/"))
+					&& (found == null || root.length() > found.length())) {
+				found = root;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Asks the repository for the root of an url. The session is disposed if
+	 * that fails.
+	 */
+	private String resolveRepositoryRoot(Session session, SVNURL url)
+			throws SVNException {
+		boolean resolved = false;
+		try {
+			String root = session.factory.getRepositoryPool()
+					.createRepository(url, true).getRepositoryRoot(true)
+					.toString();
+			resolved = true;
+			return root;
+		} finally {
+			if (!resolved) {
+				session.factory.dispose();
+			}
+		}
+	}
+
+	private Session createSession() {
+		Instrumentations.count(METRIC_SESSION_CREATED, 1);
+		SvnOperationFactory factory = new SvnOperationFactory();
+		if (authenticationManager != null) {
+			factory.setAuthenticationManager(authenticationManager);
+		}
+		createdSessions.incrementAndGet();
+		return new Session(factory);
+	}
+
+	/**
+	 * Pooled {@link SvnOperationFactory} with its last usage.
+	 */
+	private static final class Session {
+
+		final SvnOperationFactory factory;
+		long lastUsed;
+		boolean used = false;
+
+		Session(SvnOperationFactory factory) {
+			this.factory = factory;
+		}
+	}
+
+	/**
+	 * Bounded pool of sessions for one repository-root.
+	 */
+	private final class SessionPool {
+
+		private final Semaphore permits = new Semaphore(maxSessionsPerRoot,
+				true);
+		private final LinkedList<Session> idle = new LinkedList<Session>();
+
+		Session borrow() throws SVNCancelException {
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SVNCancelException();
+			}
+			synchronized (idle) {
+				if (!idle.isEmpty()) {
+					// most recently used first, its connection is warm
+					Session session = idle.removeFirst();
+					if (session.used) {
+						Instrumentations.count(METRIC_SESSION_REUSED, 1);
+					}
+					session.used = true;
+					return session;
+				}
+			}
+			try {
+				Session session = createSession();
+				session.used = true;
+				return session;
+			} catch (RuntimeException e) {
+				permits.release();
+				throw e;
+			}
+		}
+
+		void release(Session session, boolean discard) {
+			try {
+				if (discard || closed) {
+					session.factory.dispose();
+					return;
+				}
+				session.lastUsed = System.currentTimeMillis();
+				synchronized (idle) {
+					idle.addFirst(session);
+				}
+			} finally {
+				permits.release();
+			}
+		}
+
+		/**
+		 * Adds a new session, e.g. the one which asked for the root.
+		 */
+		void addIdle(Session session) {
+			session.lastUsed = System.currentTimeMillis();
+			synchronized (idle) {
+				idle.addFirst(session);
+			}
+		}
+
+		void evict(long oldestAllowed) {
+			List<Session> evicted = new ArrayList<Session>();
+			synchronized (idle) {
+				Iterator<Session> iterator = idle.iterator();
+				while (iterator.hasNext()) {
+					Session session = iterator.next();
+					if (session.lastUsed <= oldestAllowed) {
+						iterator.remove();
+						evicted.add(session);
+					}
+				}
+			}
+			for (Session session : evicted) {
+				session.factory.dispose();
+			}
+		}
+
+		int getIdleCount() {
+			synchronized (idle) {
+				return idle.size();
+			}
+		}
+	}
+}
@@ -0,0 +1,530 @@
+package org.javasnippets.utils.svn;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+import org.tmatesoft.svn.core.SVNURL;
+
+/**
+ * Persistent, incremental cache of the SVN-history of an url. The history is
+ * stored in an append-only file and indexed by changed path, author and date
+ * in memory. {@link #update()} fetches only revisions newer than the last cached
+ * one, all queries are answered locally.
+ * <p>
+ * The changed paths are repository-paths (e.g. "/trunk/module/pom.xml").
+ * Instances are thread-safe.
+ *
+ * @author ckroeger
+ */
+public class SVNHistoryCache {
+
+	private static final int MAGIC = 0x53564e48; // "SVNH"
+	private static final int VERSION = 1;
+	private static final byte RECORD_REVISION = 'R';
+	private static final byte RECORD_CHECKED = 'C';
+	private static final int MAX_STRING_LENGTH = 64 * 1024 * 1024;
+
+	private static final String METRIC_CACHE_HIT = "svn.history.cache.hit";
+	private static final String METRIC_CACHE_MISS = "svn.history.cache.miss";
+	private static final String METRIC_FETCHED = "svn.history.fetched";
+
+	private final File cacheFile;
+	private final SVNURL url;
+
+	private final TreeMap<Long, SVNHistoryEntry> revisions = new TreeMap<Long, SVNHistoryEntry>();
+	private final TreeMap<String, List<Long>> pathIndex = new TreeMap<String, List<Long>>();
+	private final Map<String, List<Long>> authorIndex = new HashMap<String, List<Long>>();
+	/** Commit-time to revisions, svn:date is not necessarily ascending. */
+	private final TreeMap<Long, List<Long>> dateIndex = new TreeMap<Long, List<Long>>();
+	private long lastCheckedRevision = -1;
+
+	/**
+	 * Opens the cache-file for the given url. An existing file is loaded, a
+	 * missing file or a file of another url starts an empty cache.
+	 *
+	 * @param cacheFile
+	 *            the cache-file (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @throws IOException
+	 *             if the cache-file can not be read
+	 */
+	public SVNHistoryCache(File cacheFile, SVNURL url) throws IOException {
+		if (cacheFile == null || url == null) {
+			throw new IllegalArgumentException();
+		}
+		this.cacheFile = cacheFile;
+		this.url = url;
+		load();
+	}
+
+	/**
+	 * Fetches all revisions newer than the last cached revision and appends
+	 * them to the cache-file.
+	 *
+	 * @return number of new revisions
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures
+	 * @throws IOException
+	 *             if the cache-file can not be written
+	 */
+	public synchronized long update() throws SVNException, IOException {
+		long head = SVNUtils.getLatestRevision(url);
+		if (head <= lastCheckedRevision) {
+			Instrumentations.count(METRIC_CACHE_HIT, 1);
+			return 0;
+		}
+		Instrumentations.count(METRIC_CACHE_MISS, 1);
+		SVNLogQuery query = new SVNLogQuery(lastCheckedRevision + 1, head);
+		query.setDiscoverChangedPaths(true);
+		long added = 0;
+		DataOutputStream out = openForAppend();
+		try {
+			SVNLogIterator iterator = SVNUtils.svnLogIterator(url, query);
+			try {
+				while (iterator.hasNext()) {
+					SVNHistoryEntry entry = toHistoryEntry(iterator.next());
+					writeRevision(out, entry);
+					index(entry);
+					added++;
+				}
+			} catch (IllegalStateException e) {
+				if (e.getCause() instanceof SVNException) {
+					throw (SVNException) e.getCause();
+				}
+				throw e;
+			} finally {
+				iterator.close();
+			}
+			out.writeByte(RECORD_CHECKED);
+			out.writeLong(head);
+			lastCheckedRevision = head;
+		} finally {
+			out.close();
+			Instrumentations.count(METRIC_FETCHED, added);
+		}
+		return added;
+	}
+
+	/**
+	 * Determines the last revision checked by {@link #update()}.
+	 *
+	 * @return last checked revision or -1 if the cache is empty
+	 */
+	public synchronized long getLastRevision() {
+		return lastCheckedRevision;
+	}
+
+	/**
+	 * Determines the number of cached revisions.
+	 *
+	 * @return number of cached revisions
+	 */
+	public synchronized int size() {
+		return revisions.size();
+	}
+
+	/**
+	 * Determines the cached entry of a revision.
+	 *
+	 * @param revision
+	 *            the revision
+	 * @return the entry or null if the revision is not cached
+	 */
+	public synchronized SVNHistoryEntry getEntry(long revision) {
+		return revisions.get(revision);
+	}
+
+	/**
+	 * Determines the revisions touching the given path or a path below it
+	 * between the given dates.
+	 *
+	 * @param path
+	 *            repository-path or null for all paths
+	 * @param from
+	 *            first date (inclusive) or null
+	 * @param to
+	 *            last date (inclusive) or null
+	 * @return matching entries in ascending order (!NULL)
+	 */
+	public synchronized List<SVNHistoryEntry> getRevisions(String path,
+			Date from, Date to) {
+		Collection<Long> candidates = path == null ? null
+				: revisionsTouching(SVNLogQuery.normalizePath(path));
+		return filterByDate(candidates, from, to);
+	}
+
+	/**
+	 * Determines the revisions of an author between the given dates.
+	 *
+	 * @param author
+	 *            the author (!NULL)
+	 * @param from
+	 *            first date (inclusive) or null
+	 * @param to
+	 *            last date (inclusive) or null
+	 * @return matching entries in ascending order (!NULL)
+	 */
+	public synchronized List<SVNHistoryEntry> getRevisionsByAuthor(
+			String author, Date from, Date to) {
+		List<Long> candidates = authorIndex.get(author);
+		if (candidates == null) {
+			return new ArrayList<SVNHistoryEntry>();
+		}
+		return filterByDate(candidates, from, to);
+	}
+
+	/**
+	 * Determines the latest revision touching the given path or a path below
+	 * it.
+	 *
+	 * @param path
+	 *            repository-path (!EMPTY)
+	 * @return the latest entry or null if the path was never changed
+	 */
+	public synchronized SVNHistoryEntry getLatestEntry(String path) {
+		String normalized = SVNLogQuery.normalizePath(path);
+		long latest = -1;
+		for (List<Long> pathRevisions : pathsBelow(normalized).values()) {
+			latest = Math.max(latest,
+					pathRevisions.get(pathRevisions.size() - 1));
+		}
+		List<Long> exact = pathIndex.get(normalized);
+		if (exact != null) {
+			latest = Math.max(latest, exact.get(exact.size() - 1));
+		}
+		return latest < 0 ? null : revisions.get(latest);
+	}
+
+	/**
+	 * Determines the latest revision for each of the given paths, e.g. the
+	 * module-directories.
+	 *
+	 * @param paths
+	 *            repository-paths (!NULL)
+	 * @return path to latest entry, paths never changed are missing (!NULL)
+	 */
+	public synchronized Map<String, SVNHistoryEntry> getLatestEntries(
+			Collection<String> paths) {
+		Map<String, SVNHistoryEntry> latest = new LinkedHashMap<String, SVNHistoryEntry>();
+		for (String path : paths) {
+			SVNHistoryEntry entry = getLatestEntry(path);
+			if (entry != null) {
+				latest.put(path, entry);
+			}
+		}
+		return latest;
+	}
+
+	private Collection<Long> revisionsTouching(String path) {
+		TreeSet<Long> touching = new TreeSet<Long>();
+		List<Long> exact = pathIndex.get(path);
+		if (exact != null) {
+			touching.addAll(exact);
+		}
+		for (List<Long> pathRevisions : pathsBelow(path).values()) {
+			touching.addAll(pathRevisions);
+		}
+		return touching;
+	}
+
+	private SortedMap<String, List<Long>> pathsBelow(String path) {
+		if ("/".equals(path)) {
+			return pathIndex;
+		}
+		// '0' is the character following '/'
+		return pathIndex.subMap(path + "/", path + "0");
+	}
+
+	/**
+	 * Intersects the candidates with the revisions of the date-index. The
+	 * smaller side is walked: the date-range until it exceeds the candidates,
+	 * otherwise the candidates are filtered by their time.
+	 *
+	 * @param candidates
+	 *            revisions in ascending order or null for all revisions
+	 */
+	private List<SVNHistoryEntry> filterByDate(Collection<Long> candidates,
+			Date from, Date to) {
+		long fromTime = from == null ? Long.MIN_VALUE : from.getTime();
+		long toTime = to == null ? Long.MAX_VALUE : to.getTime();
+		List<SVNHistoryEntry> result = new ArrayList<SVNHistoryEntry>();
+		if (from == null && to == null) {
+			if (candidates == null) {
+				result.addAll(revisions.values());
+			} else {
+				for (Long revision : candidates) {
+					result.add(revisions.get(revision));
+				}
+			}
+			return result;
+		}
+		NavigableMap<Long, List<Long>> range = dateIndex.subMap(fromTime,
+				true, toTime, true);
+		int limit = candidates == null ? Integer.MAX_VALUE : candidates
+				.size();
+		TreeSet<Long> inRange = new TreeSet<Long>();
+		for (List<Long> timeRevisions : range.values()) {
+			inRange.addAll(timeRevisions);
+			if (inRange.size() > limit) {
+				inRange = null;
+				break;
+			}
+		}
+		if (inRange == null) {
+			for (Long revision : candidates) {
+				SVNHistoryEntry entry = revisions.get(revision);
+				if (entry.getTime() >= fromTime && entry.getTime() <= toTime) {
+					result.add(entry);
+				}
+			}
+			return result;
+		}
+		if (candidates != null) {
+			inRange.retainAll(candidates instanceof TreeSet ? candidates
+					: new TreeSet<Long>(candidates));
+		}
+		for (Long revision : inRange) {
+			result.add(revisions.get(revision));
+		}
+		return result;
+	}
+
+	private void index(SVNHistoryEntry entry) {
+		Long revision = entry.getRevision();
+		revisions.put(revision, entry);
+		for (String path : entry.getChangedPaths().keySet()) {
+			addToIndex(pathIndex, path, revision);
+		}
+		if (entry.getAuthor() != null) {
+			addToIndex(authorIndex, entry.getAuthor(), revision);
+		}
+		addToIndex(dateIndex, entry.getTime(), revision);
+		lastCheckedRevision = Math.max(lastCheckedRevision, revision);
+	}
+
+	private static <K> void addToIndex(Map<K, List<Long>> index, K key,
+			Long revision) {
+		List<Long> list = index.get(key);
+		if (list == null) {
+			list = new ArrayList<Long>(2);
+			index.put(key, list);
+		}
+		list.add(revision);
+	}
+
+	private static SVNHistoryEntry toHistoryEntry(SVNLogEntry logEntry) {
+		Map<String, Character> changedPaths = new TreeMap<String, Character>();
+		Map<String, SVNLogEntryPath> logPaths = logEntry.getChangedPaths();
+		if (logPaths != null) {
+			for (SVNLogEntryPath logPath : logPaths.values()) {
+				changedPaths.put(logPath.getPath(), logPath.getType());
+			}
+		}
+		long date = logEntry.getDate() == null ? 0 : logEntry.getDate()
+				.getTime();
+		return new SVNHistoryEntry(logEntry.getRevision(),
+				logEntry.getAuthor(), date, logEntry.getMessage(),
+				changedPaths);
+	}
+
+	/**
+	 * Loads the cache-file. A truncated last record, e.g. after a crash, is
+	 * cut off.
+	 */
+	private void load() throws IOException {
+		if (!cacheFile.exists()) {
+			return;
+		}
+		CountingInputStream counter = new CountingInputStream(
+				new BufferedInputStream(new FileInputStream(cacheFile)));
+		DataInputStream in = new DataInputStream(counter);
+		long validLength = 0;
+		boolean truncated = false;
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION
+					|| !url.toString().equals(readString(in))) {
+				in.close();
+				reset();
+				return;
+			}
+			validLength = counter.getCount();
+			while (true) {
+				int type = in.read();
+				if (type == -1) {
+					break;
+				}
+				if (type == RECORD_REVISION) {
+					index(readRevision(in));
+				} else if (type == RECORD_CHECKED) {
+					lastCheckedRevision = Math.max(lastCheckedRevision,
+							in.readLong());
+				} else {
+					truncated = true;
+					break;
+				}
+				validLength = counter.getCount();
+			}
+		} catch (EOFException e) {
+			truncated = true;
+		} finally {
+			in.close();
+		}
+		if (validLength == 0) {
+			reset();
+		} else if (truncated) {
+			RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+			try {
+				file.setLength(validLength);
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	private void reset() throws IOException {
+		revisions.clear();
+		pathIndex.clear();
+		authorIndex.clear();
+		dateIndex.clear();
+		lastCheckedRevision = -1;
+		if (cacheFile.exists() && !cacheFile.delete()) {
+			throw new IOException("can not delete cache-file: "
+					+ cacheFile.getAbsolutePath());
+		}
+	}
+
+	private DataOutputStream openForAppend() throws IOException {
+		boolean exists = cacheFile.exists();
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(cacheFile, true)));
+		if (!exists) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			writeString(out, url.toString());
+		}
+		return out;
+	}
+
+	private static void writeRevision(DataOutputStream out,
+			SVNHistoryEntry entry) throws IOException {
+		out.writeByte(RECORD_REVISION);
+		out.writeLong(entry.getRevision());
+		out.writeLong(entry.getTime());
+		writeString(out, entry.getAuthor());
+		writeString(out, entry.getMessage());
+		Map<String, Character> changedPaths = entry.getChangedPaths();
+		out.writeInt(changedPaths.size());
+		for (Map.Entry<String, Character> changedPath : changedPaths
+				.entrySet()) {
+			out.writeChar(changedPath.getValue());
+			writeString(out, changedPath.getKey());
+		}
+	}
+
+	private static SVNHistoryEntry readRevision(DataInputStream in)
+			throws IOException {
+		long revision = in.readLong();
+		long date = in.readLong();
+		String author = readString(in);
+		String message = readString(in);
+		int count = in.readInt();
+		Map<String, Character> changedPaths = new TreeMap<String, Character>();
+		for (int i = 0; i < count; i++) {
+			char type = in.readChar();
+			changedPaths.put(readString(in), type);
+		}
+		return new SVNHistoryEntry(revision, author, date, message,
+				changedPaths);
+	}
+
+	private static void writeString(DataOutputStream out, String value)
+			throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > MAX_STRING_LENGTH) {
+			throw new EOFException("corrupt string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Counts the bytes read, to find the end of the last complete record.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+
+		private long count = 0;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b != -1) {
+				count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) {
+				count += read;
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+
+		long getCount() {
+			return count;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.javasnippets.utils.svn;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Immutable revision-entry of a {@link SVNHistoryCache}.
+ *
+ * @author ckroeger
+ */
+public class SVNHistoryEntry {
+
+	private final long revision;
+	private final String author;
+	private final long date;
+	private final String message;
+	private final Map<String, Character> changedPaths;
+
+	/**
+	 * Creates a new entry.
+	 *
+	 * @param revision
+	 *            the revision
+	 * @param author
+	 *            author of the revision (NULLABLE)
+	 * @param date
+	 *            date of the revision in milliseconds
+	 * @param message
+	 *            log-message (NULLABLE)
+	 * @param changedPaths
+	 *            changed repository-paths to their change-type (A, M, D, R)
+	 *            (!NULL)
+	 */
+	SVNHistoryEntry(long revision, String author, long date, String message,
+			Map<String, Character> changedPaths) {
+		this.revision = revision;
+		this.author = author;
+		this.date = date;
+		this.message = message;
+		this.changedPaths = Collections.unmodifiableMap(changedPaths);
+	}
+
+	/**
+	 * Determines the revision.
+	 *
+	 * @return the revision
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Determines the author of the revision.
+	 *
+	 * @return the author (NULLABLE)
+	 */
+	public String getAuthor() {
+		return author;
+	}
+
+	/**
+	 * Determines the date of the revision.
+	 *
+	 * @return the date
+	 */
+	public Date getDate() {
+		return new Date(date);
+	}
+
+	/**
+	 * Determines the date of the revision in milliseconds.
+	 *
+	 * @return the date in milliseconds
+	 */
+	long getTime() {
+		return date;
+	}
+
+	/**
+	 * Determines the log-message of the revision.
+	 *
+	 * @return the log-message (NULLABLE)
+	 */
+	public String getMessage() {
+		return message;
+	}
+
+	/**
+	 * Determines the changed repository-paths with their change-type (A, M, D,
+	 * R).
+	 *
+	 * @return changed paths (!NULL)
+	 */
+	public Map<String, Character> getChangedPaths() {
+		return changedPaths;
+	}
+
+	@Override
+	public String toString() {
+		return "SVNHistoryEntry [revision=" + revision + ", author=" + author
+				+ ", date=" + getDate() + ", message=" + message
+				+ ", changedPaths=" + changedPaths + "]";
+	}
+}
@@ -0,0 +1,151 @@
+package org.javasnippets.utils.svn;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+/**
+ * {@link Iterator} over SVN-log-entries which fetches the entries page by page.
+ * At most one page of entries is held in memory. HEAD is resolved once on
+ * creation, so all pages see the same snapshot of the repository.
+ * <p>
+ * SVN-failures while fetching a page are thrown as
+ * {@link IllegalStateException} with the {@link SVNException} as cause. The
+ * iterator must be closed if it is not iterated to the end.
+ *
+ * @author ckroeger
+ */
+public class SVNLogIterator implements Iterator<SVNLogEntry>, Closeable {
+
+	private final SvnOperationFactory svnOperationFactory;
+	private final SVNURL url;
+	private final SVNLogQuery query;
+	private final LinkedList<SVNLogEntry> page = new LinkedList<SVNLogEntry>();
+
+	private final long endRevision;
+	private final boolean ascending;
+	private long nextRevision;
+	private long delivered = 0;
+	private boolean exhausted = false;
+	private boolean closed = false;
+
+	/**
+	 * Creates a new iterator, use
+	 * {@link SVNUtils#svnLogIterator(SVNURL, SVNLogQuery)}.
+	 *
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures
+	 */
+	SVNLogIterator(SVNURL url, SVNLogQuery query) throws SVNException {
+		this.svnOperationFactory = new SvnOperationFactory();
+		this.url = url;
+		this.query = query;
+		long start = query.getStartRevision();
+		long end = query.getEndRevision();
+		try {
+			if (start == SVNLogQuery.HEAD || end == SVNLogQuery.HEAD) {
+				long head = SVNUtils.getLatestRevision(svnOperationFactory,
+						url);
+				start = start == SVNLogQuery.HEAD ? head : start;
+				end = end == SVNLogQuery.HEAD ? head : end;
+			}
+		} catch (SVNException e) {
+			close();
+			throw e;
+		}
+		this.nextRevision = start;
+		this.endRevision = end;
+		this.ascending = start <= end;
+	}
+
+	public boolean hasNext() {
+		while (page.isEmpty() && !exhausted) {
+			fetchPage();
+		}
+		return !page.isEmpty();
+	}
+
+	public SVNLogEntry next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return page.removeFirst();
+	}
+
+	/**
+	 * Not supported.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Releases the SVN-connections. Already fetched entries are discarded.
+	 */
+	public void close() {
+		exhausted = true;
+		page.clear();
+		if (!closed) {
+			closed = true;
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Fetches the next page of entries.
+	 */
+	private void fetchPage() {
+		long remaining = 0;
+		if (query.getLimit() > 0) {
+			remaining = query.getLimit() - delivered;
+		}
+		LogEntryFilter filter = new LogEntryFilter(query, remaining,
+				new ISvnObjectReceiver<SVNLogEntry>() {
+					public void receive(SvnTarget target, SVNLogEntry logEntry) {
+						page.add(logEntry);
+					}
+				});
+		try {
+			SVNUtils.runLog(svnOperationFactory, url, query,
+					SVNRevision.create(nextRevision),
+					SVNRevision.create(endRevision), query.getPageSize(),
+					filter);
+		} catch (SVNException e) {
+			close();
+			throw new IllegalStateException("svn log failed for " + url, e);
+		}
+		delivered += filter.getDelivered();
+		long lastRevision = filter.getLastRevision();
+		if (filter.isLimitReached()
+				|| filter.getReceived() < query.getPageSize()
+				|| lastRevision == endRevision
+				|| (!ascending && lastRevision == 0)) {
+			exhausted = true;
+		} else {
+			nextRevision = ascending ? lastRevision + 1 : lastRevision - 1;
+		}
+		if (exhausted) {
+			// keep the fetched entries, only release the connections
+			if (!closed) {
+				closed = true;
+				svnOperationFactory.dispose();
+			}
+		}
+	}
+}
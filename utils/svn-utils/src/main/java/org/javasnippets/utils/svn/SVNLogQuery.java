@@ -0,0 +1,271 @@
+package org.javasnippets.utils.svn;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNLogEntryPath;
+
+/**
+ * Parameters for streaming SVN-log-queries.
+ *
+ * @author ckroeger
+ */
+public class SVNLogQuery {
+
+	/** Revision-value for the HEAD-revision. */
+	public static final long HEAD = -1;
+
+	/** Default number of entries fetched per page by the iterator. */
+	public static final int DEFAULT_PAGE_SIZE = 500;
+
+	private long startRevision = 0;
+	private long endRevision = HEAD;
+	private long limit = 0;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private boolean discoverChangedPaths = false;
+	private Set<String> pathFilter = Collections.emptySet();
+
+	/**
+	 * Creates a query for all revisions from 0 to HEAD.
+	 */
+	public SVNLogQuery() {
+		super();
+	}
+
+	/**
+	 * Creates a query for the given revision-range.
+	 *
+	 * @param startRevision
+	 *            first revision or {@link #HEAD}
+	 * @param endRevision
+	 *            last revision or {@link #HEAD}
+	 */
+	public SVNLogQuery(long startRevision, long endRevision) {
+		setStartRevision(startRevision);
+		setEndRevision(endRevision);
+	}
+
+	/**
+	 * Determines the first revision of the range.
+	 *
+	 * @return first revision or {@link #HEAD}
+	 */
+	public long getStartRevision() {
+		return startRevision;
+	}
+
+	/**
+	 * Sets the first revision of the range.
+	 *
+	 * @param startRevision
+	 *            first revision or {@link #HEAD}
+	 */
+	public void setStartRevision(long startRevision) {
+		validateRevision(startRevision);
+		this.startRevision = startRevision;
+	}
+
+	/**
+	 * Determines the last revision of the range.
+	 *
+	 * @return last revision or {@link #HEAD}
+	 */
+	public long getEndRevision() {
+		return endRevision;
+	}
+
+	/**
+	 * Sets the last revision of the range. If it is lower than the start
+	 * revision the entries are delivered in descending order.
+	 *
+	 * @param endRevision
+	 *            last revision or {@link #HEAD}
+	 */
+	public void setEndRevision(long endRevision) {
+		validateRevision(endRevision);
+		this.endRevision = endRevision;
+	}
+
+	/**
+	 * Determines the maximum number of delivered entries.
+	 *
+	 * @return maximum number of entries, 0 for unlimited
+	 */
+	public long getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Sets the maximum number of delivered entries. When a path-filter is set
+	 * only matching entries are counted.
+	 *
+	 * @param limit
+	 *            maximum number of entries, 0 for unlimited
+	 */
+	public void setLimit(long limit) {
+		if (limit < 0) {
+			throw new IllegalArgumentException("limit must be >= 0");
+		}
+		this.limit = limit;
+	}
+
+	/**
+	 * Determines the number of entries fetched per request by
+	 * {@link SVNLogIterator}.
+	 *
+	 * @return page size
+	 */
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	/**
+	 * Sets the number of entries fetched per request by {@link SVNLogIterator}.
+	 *
+	 * @param pageSize
+	 *            page size (> 0)
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be > 0");
+		}
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Determines if changed paths are fetched for every entry.
+	 *
+	 * @return true if changed paths are fetched
+	 */
+	public boolean isDiscoverChangedPaths() {
+		return discoverChangedPaths;
+	}
+
+	/**
+	 * Sets if changed paths are fetched for every entry. Changed paths are
+	 * always fetched when a path-filter is set.
+	 *
+	 * @param discoverChangedPaths
+	 *            true to fetch changed paths
+	 */
+	public void setDiscoverChangedPaths(boolean discoverChangedPaths) {
+		this.discoverChangedPaths = discoverChangedPaths;
+	}
+
+	/**
+	 * Determines the repository-paths an entry must touch to be delivered.
+	 *
+	 * @return repository-paths, empty for no filtering (!NULL)
+	 */
+	public Set<String> getPathFilter() {
+		return pathFilter;
+	}
+
+	/**
+	 * Sets the repository-paths (e.g. "/trunk/module") an entry must touch to
+	 * be delivered. An entry matches if one of its changed paths is equal to
+	 * or below one of the given paths.
+	 *
+	 * @param paths
+	 *            repository-paths (NULLABLE)
+	 */
+	public void setPathFilter(Collection<String> paths) {
+		if (paths == null || paths.isEmpty()) {
+			this.pathFilter = Collections.emptySet();
+			return;
+		}
+		Set<String> normalized = new LinkedHashSet<String>();
+		for (String path : paths) {
+			normalized.add(normalizePath(path));
+		}
+		this.pathFilter = Collections.unmodifiableSet(normalized);
+	}
+
+	/**
+	 * Determines if changed paths must be fetched to answer this query.
+	 *
+	 * @return true if changed paths are needed
+	 */
+	boolean isChangedPathsNeeded() {
+		return discoverChangedPaths || !pathFilter.isEmpty();
+	}
+
+	/**
+	 * Checks the given entry against the path-filter.
+	 *
+	 * @param logEntry
+	 *            {@link SVNLogEntry} to check (!NULL)
+	 * @return true if the entry should be delivered
+	 */
+	boolean matches(SVNLogEntry logEntry) {
+		if (pathFilter.isEmpty()) {
+			return true;
+		}
+		Map<String, SVNLogEntryPath> changedPaths = logEntry.getChangedPaths();
+		if (changedPaths == null) {
+			return false;
+		}
+		for (String changedPath : changedPaths.keySet()) {
+			for (String filterPath : pathFilter) {
+				if (isSameOrBelow(changedPath, filterPath)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if path is equal to or below parent.
+	 *
+	 * @param path
+	 *            repository-path
+	 * @param parent
+	 *            normalized repository-path
+	 * @return true if path is equal to or below parent
+	 */
+	static boolean isSameOrBelow(String path, String parent) {
+		if ("/".equals(parent)) {
+			return true;
+		}
+		return path.startsWith(parent)
+				&& (path.length() == parent.length() || path.charAt(parent
+						.length()) == '/');
+	}
+
+	/**
+	 * Normalizes a repository-path to a leading and no trailing slash.
+	 *
+	 * @param path
+	 *            repository-path (!EMPTY)
+	 * @return normalized path
+	 */
+	static String normalizePath(String path) {
+		if (path == null || path.length() == 0) {
+			throw new IllegalArgumentException("empty path");
+		}
+		String normalized = path.startsWith("/") ? path : "/" + path;
+		while (normalized.length() > 1 && normalized.endsWith("/")) {
+			normalized = normalized.substring(0, normalized.length() - 1);
+		}
+		return normalized;
+	}
+
+	private static void validateRevision(long revision) {
+		if (revision < HEAD) {
+			throw new IllegalArgumentException("invalid revision: " + revision);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "SVNLogQuery [startRevision=" + startRevision
+				+ ", endRevision=" + endRevision + ", limit=" + limit
+				+ ", pageSize=" + pageSize + ", discoverChangedPaths="
+				+ discoverChangedPaths + ", pathFilter=" + pathFilter + "]";
+	}
+}
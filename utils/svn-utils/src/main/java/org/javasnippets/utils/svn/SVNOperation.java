@@ -0,0 +1,27 @@
+package org.javasnippets.utils.svn;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+
+/**
+ * Operation executed by {@link SVNClient} with a pooled
+ * {@link SvnOperationFactory}.
+ *
+ * @param <T>
+ *            result-type of the operation
+ * @author ckroeger
+ */
+public interface SVNOperation<T> {
+
+	/**
+	 * Runs the operation. The factory is borrowed exclusively for this call
+	 * and must not be disposed or kept.
+	 *
+	 * @param svnOperationFactory
+	 *            the pooled {@link SvnOperationFactory} (!NULL)
+	 * @return result of the operation
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures
+	 */
+	T run(SvnOperationFactory svnOperationFactory) throws SVNException;
+}
@@ -0,0 +1,104 @@
+package org.javasnippets.utils.svn;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing-metrics of one operation-type of a {@link SVNClient}.
+ *
+ * @author ckroeger
+ */
+public class SVNOperationStatistics {
+
+	private final String operation;
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong errorCount = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+
+	SVNOperationStatistics(String operation) {
+		this.operation = operation;
+	}
+
+	/**
+	 * Records one execution.
+	 *
+	 * @param nanos
+	 *            duration in nanoseconds
+	 * @param failed
+	 *            true if the execution failed
+	 */
+	void record(long nanos, boolean failed) {
+		count.incrementAndGet();
+		if (failed) {
+			errorCount.incrementAndGet();
+		}
+		totalNanos.addAndGet(nanos);
+		long max = maxNanos.get();
+		while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+			max = maxNanos.get();
+		}
+	}
+
+	/**
+	 * Determines the name of the operation.
+	 *
+	 * @return name of the operation
+	 */
+	public String getOperation() {
+		return operation;
+	}
+
+	/**
+	 * Determines the number of executions.
+	 *
+	 * @return number of executions
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Determines the number of failed executions.
+	 *
+	 * @return number of failed executions
+	 */
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	/**
+	 * Determines the summed duration of all executions.
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos.get();
+	}
+
+	/**
+	 * Determines the duration of the slowest execution.
+	 *
+	 * @return duration in nanoseconds
+	 */
+	public long getMaxNanos() {
+		return maxNanos.get();
+	}
+
+	/**
+	 * Determines the average duration of an execution.
+	 *
+	 * @return duration in milliseconds
+	 */
+	public double getAverageMillis() {
+		long executions = count.get();
+		return executions == 0 ? 0 : totalNanos.get() / 1000000d / executions;
+	}
+
+	@Override
+	public String toString() {
+		return "SVNOperationStatistics [operation=" + operation + ", count="
+				+ getCount() + ", errorCount=" + getErrorCount()
+				+ ", averageMillis=" + getAverageMillis() + ", maxMillis="
+				+ getMaxNanos() / 1000000d + "]";
+	}
+}
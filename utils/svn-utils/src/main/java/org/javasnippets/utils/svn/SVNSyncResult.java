@@ -0,0 +1,26 @@
+package org.javasnippets.utils.svn;
+
+/**
+ * Result of a working-copy synchronisation, see
+ * {@link SVNUtils#syncWorkingCopy(java.io.File, org.tmatesoft.svn.core.SVNURL, org.tmatesoft.svn.core.wc.SVNRevision, boolean)}
+ * .
+ *
+ * @author ckroeger
+ */
+public enum SVNSyncResult {
+
+	/** No working copy existed, a fresh checkout was done. */
+	CHECKED_OUT,
+
+	/** The existing working copy of the same url was updated. */
+	UPDATED,
+
+	/** The existing working copy of the same repository was switched. */
+	SWITCHED,
+
+	/**
+	 * The directory was no usable working copy of the repository, it was
+	 * deleted and checked out again.
+	 */
+	RECHECKED_OUT
+}
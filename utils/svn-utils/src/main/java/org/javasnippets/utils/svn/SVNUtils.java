@@ -1,20 +1,52 @@
 package org.javasnippets.utils.svn;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
 
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.tmatesoft.svn.core.SVNCancelException;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.SVNNodeKind;
 import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.util.SVNPathUtil;
+import org.tmatesoft.svn.core.io.ISVNReporter;
+import org.tmatesoft.svn.core.io.ISVNReporterBaton;
+import org.tmatesoft.svn.core.io.SVNRepository;
 import org.tmatesoft.svn.core.wc.SVNRevision;
+import org.tmatesoft.svn.core.wc.SVNStatusType;
 import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
 import org.tmatesoft.svn.core.wc2.SvnCheckout;
+import org.tmatesoft.svn.core.wc2.SvnCleanup;
+import org.tmatesoft.svn.core.wc2.SvnExport;
+import org.tmatesoft.svn.core.wc2.SvnGetInfo;
+import org.tmatesoft.svn.core.wc2.SvnGetStatus;
+import org.tmatesoft.svn.core.wc2.SvnInfo;
 import org.tmatesoft.svn.core.wc2.SvnLog;
 import org.tmatesoft.svn.core.wc2.SvnOperationFactory;
+import org.tmatesoft.svn.core.wc2.SvnRevert;
 import org.tmatesoft.svn.core.wc2.SvnRevisionRange;
+import org.tmatesoft.svn.core.wc2.SvnStatus;
+import org.tmatesoft.svn.core.wc2.SvnSwitch;
 import org.tmatesoft.svn.core.wc2.SvnTarget;
+import org.tmatesoft.svn.core.wc2.SvnUpdate;
 
 /**
  * SVNUtility-Class for SVN-Operations
@@ -23,6 +55,26 @@ import org.tmatesoft.svn.core.wc2.SvnTarget;
  */
 public class SVNUtils {
 
+	private static final String METRIC_ROUND_TRIPS = "svn.roundtrips";
+	private static final String METRIC_CHECKOUT = "svn.checkout";
+	private static final String METRIC_EXPORT = "svn.export";
+	private static final String METRIC_EXPORT_ZIP = "svn.export.zip";
+	private static final String METRIC_EXPORT_ZIP_ENTRIES = "svn.export.zip.entries";
+	private static final String METRIC_UPDATE = "svn.update";
+	private static final String METRIC_SWITCH = "svn.switch";
+	private static final String METRIC_LOG = "svn.log";
+	private static final String METRIC_LATEST_REVISION = "svn.latest-revision";
+
+	/** Failures of a working copy which is replaced by a clean checkout. */
+	private static final Set<SVNErrorCode> BROKEN_WORKING_COPY = new HashSet<SVNErrorCode>(
+			Arrays.asList(SVNErrorCode.WC_NOT_WORKING_COPY,
+					SVNErrorCode.WC_CORRUPT,
+					SVNErrorCode.WC_CORRUPT_TEXT_BASE,
+					SVNErrorCode.WC_UPGRADE_REQUIRED,
+					SVNErrorCode.WC_UNSUPPORTED_FORMAT,
+					SVNErrorCode.WC_DB_ERROR, SVNErrorCode.WC_BAD_ADM_LOG,
+					SVNErrorCode.WC_BAD_ADM_LOG_START));
+
 	/**
 	 * Does a SVN-checkout to workingCopyDirectoryPath from the given svn-url.
 	 * 
@@ -39,18 +91,303 @@ public class SVNUtils {
 			SVNRevision revision) throws SVNException {
 		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
 		try {
-			final SvnCheckout checkout = svnOperationFactory.createCheckout();
-			checkout.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
-			checkout.setSource(SvnTarget.fromURL(url));
-			if (revision != null) {
-				checkout.setRevision(revision);
-			}
+			checkout(svnOperationFactory, workingCopyDirectory, url, revision);
+		} finally {
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Does a SVN-checkout with the given {@link SvnOperationFactory}.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param workingCopyDirectory
+	 *            {@link File} of local directory for checkout
+	 * @param url
+	 *            svn-repository-url
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	static void checkout(SvnOperationFactory svnOperationFactory,
+			File workingCopyDirectory, SVNURL url, SVNRevision revision)
+			throws SVNException {
+		final SvnCheckout checkout = svnOperationFactory.createCheckout();
+		checkout.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		checkout.setSource(SvnTarget.fromURL(url));
+		if (revision != null) {
+			checkout.setRevision(revision);
+		}
+		long start = Instrumentations.startTime();
+		try {
 			checkout.run();
+		} finally {
+			roundTrip(METRIC_CHECKOUT, start);
+		}
+	}
+
+	/**
+	 * Does a SVN-export to exportDirectory from the given svn-url. Unlike a
+	 * checkout no administrative .svn-metadata is written. An existing
+	 * exportDirectory is deleted first, so files deleted in the repository do
+	 * not remain in a re-exported tree.
+	 * 
+	 * @param exportDirectory
+	 *            {@link File} of local directory for the export
+	 * @param url
+	 *            svn-repository-url
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public static void export(File exportDirectory, SVNURL url,
+			SVNRevision revision) throws SVNException {
+		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+		try {
+			export(svnOperationFactory, exportDirectory, url, revision);
+		} finally {
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Does a SVN-export with the given {@link SvnOperationFactory}, an
+	 * existing exportDirectory is deleted first.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param exportDirectory
+	 *            {@link File} of local directory for the export
+	 * @param url
+	 *            svn-repository-url
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	static void export(SvnOperationFactory svnOperationFactory,
+			File exportDirectory, SVNURL url, SVNRevision revision)
+			throws SVNException {
+		SVNRevision svnRevision = revision == null ? SVNRevision.HEAD
+				: revision;
+		checkAndDeleteIfExists(exportDirectory.getPath());
+		final SvnExport export = svnOperationFactory.createExport();
+		export.setSingleTarget(SvnTarget.fromFile(exportDirectory));
+		export.setSource(SvnTarget.fromURL(url, svnRevision));
+		export.setRevision(svnRevision);
+		export.setForce(true);
+		long start = Instrumentations.startTime();
+		try {
+			export.run();
+		} finally {
+			roundTrip(METRIC_EXPORT, start);
+		}
+	}
+
+	/**
+	 * Exports the given svn-url directly into a zip-file, without a temporary
+	 * working copy. Folder-ignore semantics are the same as in
+	 * ZipUtils.zipFolder: folders with one of the given names are skipped.
+	 * The zip is written to a temporary file next to it and renamed when
+	 * complete, so a failed or cancelled export never leaves a truncated
+	 * zip-file.
+	 * 
+	 * @param destFile
+	 *            path of the zip-file to create (!EMPTY)
+	 * @param url
+	 *            svn-repository-url of a directory (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param foldersToIgnore
+	 *            names of folders to skip (NULLABLE)
+	 * @return number of zipped files
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures or when
+	 *             the zip-file can not be written
+	 */
+	public static long exportToZip(String destFile, SVNURL url,
+			SVNRevision revision, String[] foldersToIgnore)
+			throws SVNException {
+		validateNotEmpty(destFile);
+		OutputStream out = null;
+		Path temp = null;
+		boolean done = false;
+		try {
+			Path target = Paths.get(destFile).toAbsolutePath();
+			temp = Files.createTempFile(target.getParent(),
+					"." + target.getFileName(), ".tmp");
+			out = new BufferedOutputStream(Files.newOutputStream(temp));
+			long entries = exportToZip(url, revision, out, foldersToIgnore);
+			out.close();
+			out = null;
+			moveAtomically(temp, target);
+			done = true;
+			return entries;
+		} catch (IOException e) {
+			throw new SVNException(SVNErrorMessage.create(
+					SVNErrorCode.IO_ERROR, e.getMessage()), e);
+		} finally {
+			closeQuietly(out);
+			if (!done && temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					// the export failed anyway
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renames the temporary file to the target, replacing an existing file.
+	 */
+	private static void moveAtomically(Path temp, Path target)
+			throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Exports the given svn-url as zip into the given stream. The file
+	 * contents are streamed from the repository into the zip-entries, nothing
+	 * is written to disk. The stream is finished but not closed.
+	 * 
+	 * @param url
+	 *            svn-repository-url of a directory (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param zipTarget
+	 *            target of the zip-data (!NULL)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (NULLABLE)
+	 * @return number of zipped files
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures or when
+	 *             the stream can not be written
+	 */
+	public static long exportToZip(SVNURL url, SVNRevision revision,
+			OutputStream zipTarget, String[] foldersToIgnore)
+			throws SVNException {
+		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+		try {
+			return exportToZip(svnOperationFactory, url, revision, zipTarget,
+					foldersToIgnore);
 		} finally {
 			svnOperationFactory.dispose();
 		}
 	}
 
+	/**
+	 * Exports the given svn-url as zip into the given stream with the given
+	 * {@link SvnOperationFactory}.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param url
+	 *            svn-repository-url of a directory (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param zipTarget
+	 *            target of the zip-data (!NULL)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (NULLABLE)
+	 * @return number of zipped files
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures or when
+	 *             the stream can not be written
+	 */
+	static long exportToZip(SvnOperationFactory svnOperationFactory,
+			SVNURL url, SVNRevision revision, OutputStream zipTarget,
+			String[] foldersToIgnore) throws SVNException {
+		validateTrue(url != null, "url is null");
+		validateTrue(zipTarget != null, "zipTarget is null");
+		Set<String> ignoredFolders = new HashSet<String>();
+		if (foldersToIgnore != null) {
+			ignoredFolders.addAll(Arrays.asList(foldersToIgnore));
+		}
+		// .svn-metadata never exists in the repository, skip it anyway
+		ignoredFolders.add(".svn");
+
+		SVNRepository repository = svnOperationFactory.getRepositoryPool()
+				.createRepository(url, true);
+		final long revisionNumber = resolveRevision(repository, revision);
+		validateTrue(
+				repository.checkPath("", revisionNumber) == SVNNodeKind.DIR,
+				"url is no directory: " + url);
+
+		ZipOutputStream zipStream = new ZipOutputStream(zipTarget);
+		SVNZipExportEditor editor = new SVNZipExportEditor(zipStream,
+				ignoredFolders);
+		if (!ignoredFolders.contains(SVNPathUtil.tail(url.getPath()))) {
+			long start = Instrumentations.startTime();
+			try {
+				repository.update(revisionNumber, null, SVNDepth.INFINITY,
+						false, new ISVNReporterBaton() {
+							public void report(ISVNReporter reporter)
+									throws SVNException {
+								reporter.setPath("", null, revisionNumber,
+										SVNDepth.INFINITY, true);
+								reporter.finishReport();
+							}
+						}, editor);
+			} finally {
+				roundTrip(METRIC_EXPORT_ZIP, start);
+			}
+			Instrumentations.count(METRIC_EXPORT_ZIP_ENTRIES,
+					editor.getEntryCount());
+		}
+		try {
+			zipStream.finish();
+			zipStream.flush();
+		} catch (IOException e) {
+			throw new SVNException(SVNErrorMessage.create(
+					SVNErrorCode.IO_ERROR, e.getMessage()), e);
+		}
+		return editor.getEntryCount();
+	}
+
+	/**
+	 * Resolves a {@link SVNRevision} to a revision-number.
+	 */
+	private static long resolveRevision(SVNRepository repository,
+			SVNRevision revision) throws SVNException {
+		if (revision == null || revision == SVNRevision.HEAD
+				|| !revision.isValid()) {
+			return repository.getLatestRevision();
+		}
+		if (revision.getNumber() >= 0) {
+			return revision.getNumber();
+		}
+		if (revision.getDate() != null) {
+			return repository.getDatedRevision(revision.getDate());
+		}
+		return repository.getLatestRevision();
+	}
+
+	/**
+	 * Closes the stream silently.
+	 * 
+	 * @param streamToClose
+	 *            {@link OutputStream} to close (NULLABLE)
+	 */
+	private static void closeQuietly(OutputStream streamToClose) {
+		if (streamToClose == null) {
+			return;
+		}
+		try {
+			streamToClose.close();
+		} catch (IOException e) {
+			/* ignore */
+		}
+	}
+
 	/**
 	 * Does a SVN-checkout to workingCopyDirectoryPath from the given svn-url.
 	 * 
@@ -78,6 +415,316 @@ public class SVNUtils {
 		checkout(checkoutDir, svnUrl, svnRevision);
 	}
 
+	/**
+	 * Brings workingCopyDirectoryPath to the given revision of the svn-url. An
+	 * existing working copy of the same url is updated, one of another url in
+	 * the same repository is switched, so only changed files are transferred.
+	 * A directory which is no working copy, a broken working copy (e.g.
+	 * corrupt or in an old format) or a working copy of another repository is
+	 * deleted and checked out again. Without revert a working copy with local
+	 * changes or unversioned files is never deleted. Failures of the
+	 * repository, e.g. an unknown revision or url, are thrown.
+	 * 
+	 * @param workingCopyDirectoryPath
+	 *            local directory of the working copy (!EMPTY)
+	 * @param url
+	 *            svn-repository-url (!EMPTY)
+	 * @param revision
+	 *            desired revision or -1 for HEAD-revision
+	 * @param revert
+	 *            true to clean up and revert local changes and to remove
+	 *            unversioned files before the update
+	 * @return what was done to the working copy
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures
+	 */
+	public static SVNSyncResult syncWorkingCopy(
+			String workingCopyDirectoryPath, String url, int revision,
+			boolean revert) throws SVNException {
+		{ // sanity-checks
+			validateNotEmpty(workingCopyDirectoryPath);
+			validateNotEmpty(url);
+		}
+		SVNRevision svnRevision = SVNRevision.HEAD;
+		if (revision >= 0) {
+			svnRevision = SVNRevision.create(revision);
+		}
+		return syncWorkingCopy(new File(workingCopyDirectoryPath),
+				SVNURL.parseURIEncoded(url), svnRevision, revert);
+	}
+
+	/**
+	 * Brings the working copy to the given revision of the svn-url, see
+	 * {@link #syncWorkingCopy(String, String, int, boolean)}.
+	 * 
+	 * @param workingCopyDirectory
+	 *            {@link File} of local directory of the working copy (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param revert
+	 *            true to clean up and revert local changes and to remove
+	 *            unversioned files before the update
+	 * @return what was done to the working copy
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures
+	 */
+	public static SVNSyncResult syncWorkingCopy(File workingCopyDirectory,
+			SVNURL url, SVNRevision revision, boolean revert)
+			throws SVNException {
+		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+		try {
+			return syncWorkingCopy(svnOperationFactory, workingCopyDirectory,
+					url, revision, revert);
+		} finally {
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Brings the working copy to the given revision of the svn-url with the
+	 * given {@link SvnOperationFactory}.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param workingCopyDirectory
+	 *            {@link File} of local directory of the working copy (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param revision
+	 *            revision or null for HEAD
+	 * @param revert
+	 *            true to revert local changes before the update
+	 * @return what was done to the working copy
+	 * @throws SVNException
+	 *             occurs on SVN-communication-failures or if a working copy
+	 *             with local changes would have to be replaced
+	 */
+	static SVNSyncResult syncWorkingCopy(
+			SvnOperationFactory svnOperationFactory,
+			File workingCopyDirectory, SVNURL url, SVNRevision revision,
+			boolean revert) throws SVNException {
+		validateTrue(workingCopyDirectory != null, "directory is null");
+		validateTrue(url != null, "url is null");
+		SVNRevision svnRevision = revision == null ? SVNRevision.HEAD
+				: revision;
+		String[] content = workingCopyDirectory.list();
+		if (content == null || content.length == 0) {
+			checkout(svnOperationFactory, workingCopyDirectory, url,
+					svnRevision);
+			return SVNSyncResult.CHECKED_OUT;
+		}
+		SvnInfo info = null;
+		try {
+			info = getWorkingCopyInfo(svnOperationFactory, workingCopyDirectory);
+		} catch (SVNException e) {
+			if (!isBrokenWorkingCopy(e)) {
+				throw e;
+			}
+		}
+		if (info != null && isSameRepository(info, url)) {
+			try {
+				if (revert) {
+					revert(svnOperationFactory, workingCopyDirectory);
+				}
+				if (url.equals(info.getUrl())) {
+					update(svnOperationFactory, workingCopyDirectory,
+							svnRevision);
+					return SVNSyncResult.UPDATED;
+				}
+				switchTo(svnOperationFactory, workingCopyDirectory, url,
+						svnRevision);
+				return SVNSyncResult.SWITCHED;
+			} catch (SVNException e) {
+				if (!isBrokenWorkingCopy(e)) {
+					throw e;
+				}
+				// broken working copy, fall through to a clean checkout
+			}
+		}
+		if (!revert && isWorkingCopy(workingCopyDirectory)) {
+			checkNoLocalChanges(svnOperationFactory, workingCopyDirectory);
+		}
+		checkAndDeleteIfExists(workingCopyDirectory.getPath());
+		checkout(svnOperationFactory, workingCopyDirectory, url, svnRevision);
+		return SVNSyncResult.RECHECKED_OUT;
+	}
+
+	/**
+	 * Determines the info of a local working copy.
+	 * 
+	 * @return the {@link SvnInfo}
+	 * @throws SVNException
+	 *             e.g. {@link SVNErrorCode#WC_NOT_WORKING_COPY} if the
+	 *             directory is no working copy
+	 */
+	private static SvnInfo getWorkingCopyInfo(
+			SvnOperationFactory svnOperationFactory, File workingCopyDirectory)
+			throws SVNException {
+		SvnGetInfo getInfo = svnOperationFactory.createGetInfo();
+		getInfo.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		return getInfo.run();
+	}
+
+	/**
+	 * Checks if the directory contains svn-metadata, even a broken one.
+	 */
+	private static boolean isWorkingCopy(File directory) {
+		return new File(directory, ".svn").exists()
+				|| new File(directory, "_svn").exists();
+	}
+
+	/**
+	 * Checks that the working copy has neither local modifications nor
+	 * unversioned files, so it can be replaced without losing anything.
+	 * 
+	 * @throws SVNException
+	 *             with {@link SVNErrorCode#WC_LEFT_LOCAL_MOD} if there are
+	 *             local changes or the status can not be determined
+	 */
+	private static void checkNoLocalChanges(
+			SvnOperationFactory svnOperationFactory, File workingCopyDirectory)
+			throws SVNException {
+		final List<File> changed = new ArrayList<File>();
+		try {
+			SvnGetStatus status = svnOperationFactory.createGetStatus();
+			status.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+			status.setDepth(SVNDepth.INFINITY);
+			status.setReceiver(new ISvnObjectReceiver<SvnStatus>() {
+				public void receive(SvnTarget target, SvnStatus status) {
+					SVNStatusType nodeStatus = status.getNodeStatus();
+					if (nodeStatus != SVNStatusType.STATUS_NORMAL
+							&& nodeStatus != SVNStatusType.STATUS_NONE
+							&& nodeStatus != SVNStatusType.STATUS_EXTERNAL) {
+						changed.add(status.getPath());
+					}
+				}
+			});
+			status.run();
+		} catch (SVNException e) {
+			throw new SVNException(SVNErrorMessage.create(
+					SVNErrorCode.WC_LEFT_LOCAL_MOD,
+					"can not determine local changes of broken working copy "
+							+ workingCopyDirectory
+							+ ", sync with revert to replace it"), e);
+		}
+		if (!changed.isEmpty()) {
+			throw new SVNException(SVNErrorMessage.create(
+					SVNErrorCode.WC_LEFT_LOCAL_MOD,
+					"working copy " + workingCopyDirectory
+							+ " has local changes " + changed
+							+ ", sync with revert to replace it"));
+		}
+	}
+
+	/**
+	 * Checks if the working copy belongs to the repository of the given url.
+	 */
+	private static boolean isSameRepository(SvnInfo info, SVNURL url) {
+		SVNURL root = info.getRepositoryRootUrl();
+		if (root == null || info.getUrl() == null) {
+			return false;
+		}
+		String rootString = root.toString();
+		String urlString = url.toString();
+		return urlString.equals(rootString)
+				|| urlString.startsWith(rootString + "/");
+	}
+
+	/**
+	 * Checks if the failure is caused by a missing or broken working copy. All
+	 * other failures, e.g. of the repository, the revision, the url or the
+	 * authorization, are no reason to replace the working copy.
+	 */
+	private static boolean isBrokenWorkingCopy(SVNException e) {
+		if (e instanceof SVNCancelException) {
+			return false;
+		}
+		return BROKEN_WORKING_COPY.contains(e.getErrorMessage()
+				.getErrorCode());
+	}
+
+	/**
+	 * Cleans up the working copy, reverts all local changes and removes
+	 * unversioned and ignored files.
+	 * 
+	 * @throws SVNException
+	 *             with {@link SVNErrorCode#IO_ERROR} if an unversioned or
+	 *             ignored file can not be deleted
+	 */
+	private static void revert(SvnOperationFactory svnOperationFactory,
+			File workingCopyDirectory) throws SVNException {
+		SvnCleanup cleanup = svnOperationFactory.createCleanup();
+		cleanup.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		cleanup.run();
+
+		SvnRevert revert = svnOperationFactory.createRevert();
+		revert.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		revert.setDepth(SVNDepth.INFINITY);
+		revert.run();
+
+		final List<File> unversioned = new ArrayList<File>();
+		SvnGetStatus status = svnOperationFactory.createGetStatus();
+		status.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		status.setDepth(SVNDepth.INFINITY);
+		status.setReportIgnored(true);
+		status.setReceiver(new ISvnObjectReceiver<SvnStatus>() {
+			public void receive(SvnTarget target, SvnStatus status) {
+				SVNStatusType nodeStatus = status.getNodeStatus();
+				if (nodeStatus == SVNStatusType.STATUS_UNVERSIONED
+						|| nodeStatus == SVNStatusType.STATUS_IGNORED) {
+					unversioned.add(status.getPath());
+				}
+			}
+		});
+		status.run();
+		List<File> notDeleted = new ArrayList<File>();
+		for (File file : unversioned) {
+			boolean deleted = file.isDirectory() ? deleteDirectory(file)
+					: file.delete();
+			if (!deleted && file.exists()) {
+				notDeleted.add(file);
+			}
+		}
+		if (!notDeleted.isEmpty()) {
+			throw new SVNException(SVNErrorMessage.create(
+					SVNErrorCode.IO_ERROR,
+					"Failed to delete unversioned files: " + notDeleted));
+		}
+	}
+
+	private static void update(SvnOperationFactory svnOperationFactory,
+			File workingCopyDirectory, SVNRevision revision)
+			throws SVNException {
+		SvnUpdate update = svnOperationFactory.createUpdate();
+		update.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		update.setRevision(revision);
+		long start = Instrumentations.startTime();
+		try {
+			update.run();
+		} finally {
+			roundTrip(METRIC_UPDATE, start);
+		}
+	}
+
+	private static void switchTo(SvnOperationFactory svnOperationFactory,
+			File workingCopyDirectory, SVNURL url, SVNRevision revision)
+			throws SVNException {
+		SvnSwitch switchOperation = svnOperationFactory.createSwitch();
+		switchOperation.setSingleTarget(SvnTarget.fromFile(workingCopyDirectory));
+		switchOperation.setSwitchTarget(SvnTarget.fromURL(url, revision));
+		switchOperation.setRevision(revision);
+		// the target may be unrelated, e.g. another module of the repository
+		switchOperation.setIgnoreAncestry(true);
+		long start = Instrumentations.startTime();
+		try {
+			switchOperation.run();
+		} finally {
+			roundTrip(METRIC_SWITCH, start);
+		}
+	}
+
 	/**
 	 * Checks if given dir-path exists, if exists it will be deleted.
 	 * 
@@ -87,7 +734,7 @@ public class SVNUtils {
 	 * @throws IllegalArgumentException
 	 *             If dir not exists or not accessable.
 	 */
-	private static File checkAndDeleteIfExists(String workingCopyDirectoryPath) {
+	static File checkAndDeleteIfExists(String workingCopyDirectoryPath) {
 		File checkoutDir = new File(workingCopyDirectoryPath);
 		String absolutePath = checkoutDir.getAbsolutePath();
 		if (checkoutDir.exists()) {
@@ -95,8 +742,11 @@ public class SVNUtils {
 					"given path is no directory: %s", absolutePath));
 			validateTrue(checkoutDir.canWrite(),
 					String.format("can not write in path: %s", absolutePath));
-			validateTrue(deleteDirectory(checkoutDir),
-					String.format("can not delete in path: %s", absolutePath));
+			DeleteResult result = DirectoryDeleter.getDefault().delete(
+					checkoutDir.toPath());
+			validateTrue(result.isSuccessful(), String.format(
+					"can not delete in path: %s, failed: %s", absolutePath,
+					result.getFailures().keySet()));
 		}
 		return checkoutDir;
 	}
@@ -133,62 +783,253 @@ public class SVNUtils {
 	}
 
 	/**
-	 * Deletes a given directory.
+	 * Deletes a given directory. Subtrees are deleted in parallel, see
+	 * {@link DirectoryDeleter}.
 	 * 
 	 * @param path
 	 *            {@link File} of a directory-
-	 * @return true if succeeds
+	 * @return true if succeeds, false if the path does not exist
 	 */
 	public static boolean deleteDirectory(File path) {
-		if (path.exists()) {
-			File[] files = path.listFiles();
-			for (int i = 0; i < files.length; i++) {
-				if (files[i].isDirectory()) {
-					deleteDirectory(files[i]);
-				} else {
-					files[i].delete();
-				}
-			}
+		if (!path.exists()) {
+			return false;
 		}
-		return (path.delete());
+		return DirectoryDeleter.getDefault().delete(path.toPath())
+				.isSuccessful()
+				&& !path.exists();
 	}
 
 	/**
-	 * TBD.
+	 * Determines the log-entries between the given dates, including the
+	 * changed paths of every entry.
 	 * 
 	 * @param url
 	 *            svn-repository-url
 	 * @param date1
+	 *            start-date of the range
 	 * @param date2
+	 *            end-date of the range
 	 * @return LogEntries between given Dates
 	 * 
 	 * @throws SVNException
 	 *             SVNException occurs on SVN-communication-failures
+	 * @see #svnLog(SVNURL, SVNLogQuery, ISvnObjectReceiver)
+	 * @see #svnLogIterator(SVNURL, SVNLogQuery)
 	 */
 	public static List<SVNLogEntry> svnLog(SVNURL url, Date date1, Date date2)
 			throws SVNException {
 		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
 		final List<SVNLogEntry> logEntries = new ArrayList<SVNLogEntry>();
 		try {
-			final SvnLog log = svnOperationFactory.createLog();
-			log.addRange(SvnRevisionRange.create(SVNRevision.create(date1),
-					SVNRevision.create(date2)));
-			log.setDiscoverChangedPaths(true);
-			log.setSingleTarget(SvnTarget.fromURL(url));
-			log.setReceiver(new ISvnObjectReceiver<SVNLogEntry>() {
-				public void receive(SvnTarget target, SVNLogEntry logEntry)
-						throws SVNException {
-//					if (target != null) {
-//						System.out.println("Target: " + target.toString());
-//					}
-//					System.out.println("LogEntry: " + logEntry.toString());
-					logEntries.add(logEntry);
-				}
-			});
-			log.run();
+			SVNLogQuery query = new SVNLogQuery();
+			query.setDiscoverChangedPaths(true);
+			runLog(svnOperationFactory, url, query, SVNRevision.create(date1),
+					SVNRevision.create(date2), 0, new LogEntryFilter(query, 0,
+							new ISvnObjectReceiver<SVNLogEntry>() {
+								public void receive(SvnTarget target,
+										SVNLogEntry logEntry) {
+									logEntries.add(logEntry);
+								}
+							}));
 		} finally {
 			svnOperationFactory.dispose();
 		}
 		return logEntries;
 	}
+
+	/**
+	 * Streams the log-entries of the given query to the receiver. Every entry
+	 * is passed on as soon as it arrives and is not held afterwards, so the
+	 * memory-usage does not depend on the size of the range.
+	 * 
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @param receiver
+	 *            receiver of the entries matching the path-filter (!NULL)
+	 * @return number of delivered entries
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures or when
+	 *             thrown by the receiver
+	 */
+	public static long svnLog(SVNURL url, SVNLogQuery query,
+			ISvnObjectReceiver<SVNLogEntry> receiver) throws SVNException {
+		{ // sanity-checks
+			validateTrue(url != null, "url is null");
+			validateTrue(query != null, "query is null");
+			validateTrue(receiver != null, "receiver is null");
+		}
+		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+		try {
+			return svnLog(svnOperationFactory, url, query, receiver);
+		} finally {
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Streams the log-entries of the given query to the receiver with the
+	 * given {@link SvnOperationFactory}.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @param receiver
+	 *            receiver of the entries matching the path-filter (!NULL)
+	 * @return number of delivered entries
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures or when
+	 *             thrown by the receiver
+	 */
+	static long svnLog(SvnOperationFactory svnOperationFactory, SVNURL url,
+			SVNLogQuery query, ISvnObjectReceiver<SVNLogEntry> receiver)
+			throws SVNException {
+		LogEntryFilter filter = new LogEntryFilter(query, query.getLimit(),
+				receiver);
+		// without filtering the server can apply the limit
+		long serverLimit = query.getPathFilter().isEmpty() ? query.getLimit()
+				: 0;
+		runLog(svnOperationFactory, url, query,
+				toSVNRevision(query.getStartRevision()),
+				toSVNRevision(query.getEndRevision()), serverLimit, filter);
+		return filter.getDelivered();
+	}
+
+	/**
+	 * Creates an {@link SVNLogIterator} which fetches the log-entries of the
+	 * given query page by page.
+	 * 
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @return the {@link SVNLogIterator}, must be closed if not iterated to the
+	 *         end
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public static SVNLogIterator svnLogIterator(SVNURL url, SVNLogQuery query)
+			throws SVNException {
+		{ // sanity-checks
+			validateTrue(url != null, "url is null");
+			validateTrue(query != null, "query is null");
+		}
+		return new SVNLogIterator(url, query);
+	}
+
+	/**
+	 * Determines the latest revision of the repository of the given url.
+	 * 
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @return the HEAD-revision
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	public static long getLatestRevision(SVNURL url) throws SVNException {
+		validateTrue(url != null, "url is null");
+		final SvnOperationFactory svnOperationFactory = new SvnOperationFactory();
+		try {
+			return getLatestRevision(svnOperationFactory, url);
+		} finally {
+			svnOperationFactory.dispose();
+		}
+	}
+
+	/**
+	 * Determines the latest revision of the repository of the given url with
+	 * the given {@link SvnOperationFactory}.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @return the HEAD-revision
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	static long getLatestRevision(SvnOperationFactory svnOperationFactory,
+			SVNURL url) throws SVNException {
+		long start = Instrumentations.startTime();
+		try {
+			return svnOperationFactory.getRepositoryPool()
+					.createRepository(url, true).getLatestRevision();
+		} finally {
+			roundTrip(METRIC_LATEST_REVISION, start);
+		}
+	}
+
+	/**
+	 * Runs a single log-operation.
+	 * 
+	 * @param svnOperationFactory
+	 *            the {@link SvnOperationFactory} to use (!NULL)
+	 * @param url
+	 *            svn-repository-url (!NULL)
+	 * @param query
+	 *            the {@link SVNLogQuery} (!NULL)
+	 * @param start
+	 *            first revision of the range
+	 * @param end
+	 *            last revision of the range
+	 * @param serverLimit
+	 *            limit passed to the server, 0 for unlimited
+	 * @param filter
+	 *            the {@link LogEntryFilter} receiving the entries (!NULL)
+	 * @throws SVNException
+	 *             SVNException occurs on SVN-communication-failures
+	 */
+	static void runLog(SvnOperationFactory svnOperationFactory, SVNURL url,
+			SVNLogQuery query, SVNRevision start, SVNRevision end,
+			long serverLimit, LogEntryFilter filter) throws SVNException {
+		final SvnLog log = svnOperationFactory.createLog();
+		log.addRange(SvnRevisionRange.create(start, end));
+		log.setDiscoverChangedPaths(query.isChangedPathsNeeded());
+		log.setSingleTarget(SvnTarget.fromURL(url));
+		if (serverLimit > 0) {
+			log.setLimit(serverLimit);
+		}
+		log.setReceiver(filter);
+		long startTime = Instrumentations.startTime();
+		try {
+			log.run();
+		} catch (SVNCancelException e) {
+			if (!filter.isLimitReached()) {
+				throw e;
+			}
+		} finally {
+			roundTrip(METRIC_LOG, startTime);
+		}
+	}
+
+	/**
+	 * Records a request to the repository.
+	 * 
+	 * @param metric
+	 *            name of the timer (!EMPTY)
+	 * @param start
+	 *            result of {@link Instrumentations#startTime()}
+	 */
+	private static void roundTrip(String metric, long start) {
+		Instrumentations.time(metric, start);
+		Instrumentations.count(METRIC_ROUND_TRIPS, 1);
+	}
+
+	/**
+	 * Converts a revision-number to a {@link SVNRevision}.
+	 * 
+	 * @param revision
+	 *            revision or {@link SVNLogQuery#HEAD}
+	 * @return the {@link SVNRevision}
+	 */
+	private static SVNRevision toSVNRevision(long revision) {
+		if (revision == SVNLogQuery.HEAD) {
+			return SVNRevision.HEAD;
+		}
+		return SVNRevision.create(revision);
+	}
 }
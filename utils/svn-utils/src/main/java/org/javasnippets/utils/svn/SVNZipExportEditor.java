@@ -0,0 +1,218 @@
+package org.javasnippets.utils.svn;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.tmatesoft.svn.core.SVNCommitInfo;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNErrorMessage;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNPropertyValue;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaProcessor;
+import org.tmatesoft.svn.core.io.diff.SVNDiffWindow;
+
+/**
+ * {@link ISVNEditor} which writes the files of an export-drive directly as
+ * entries into a {@link ZipOutputStream}. The deltas are applied against an
+ * empty base, so the file contents are never written to disk. Directories
+ * whose name is in the set of ignored folders are skipped with everything
+ * below, like in ZipUtils.zipFolder. Only files get entries.
+ * <p>
+ * SVN sends the text delta of one file completely before anything else, so
+ * a zip-entry is opened at applyTextDelta and closed at textDeltaEnd.
+ *
+ * @author ckroeger
+ */
+class SVNZipExportEditor implements ISVNEditor {
+
+	/** Sink for deltas of skipped files. */
+	private static final OutputStream NULL_STREAM = new OutputStream() {
+		@Override
+		public void write(int b) {
+			/* discard */
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			/* discard */
+		}
+	};
+
+	private final ZipOutputStream zipStream;
+	private final OutputStream entryStream;
+	private final Set<String> ignoredFolders;
+	private final SVNDeltaProcessor deltaProcessor = new SVNDeltaProcessor();
+
+	private int ignoredDepth = 0;
+	private String openEntry = null;
+	private boolean entryWritten = false;
+	private long entries = 0;
+
+	/**
+	 * Creates a new editor.
+	 *
+	 * @param zipStream
+	 *            target of the entries (!NULL)
+	 * @param ignoredFolders
+	 *            names of folders to skip (!NULL)
+	 */
+	SVNZipExportEditor(ZipOutputStream zipStream, Set<String> ignoredFolders) {
+		this.zipStream = zipStream;
+		this.ignoredFolders = ignoredFolders;
+		// the delta-processor closes its target after every file
+		this.entryStream = new FilterOutputStream(zipStream) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() {
+				/* the entry is closed by the editor */
+			}
+		};
+	}
+
+	/**
+	 * Determines the number of written zip-entries.
+	 *
+	 * @return number of entries
+	 */
+	long getEntryCount() {
+		return entries;
+	}
+
+	public void targetRevision(long revision) {
+		/* nothing to do */
+	}
+
+	public void openRoot(long revision) {
+		/* nothing to do */
+	}
+
+	public void deleteEntry(String path, long revision) {
+		/* not sent for an export */
+	}
+
+	public void absentDir(String path) {
+		/* no access, skipped */
+	}
+
+	public void absentFile(String path) {
+		/* no access, skipped */
+	}
+
+	public void addDir(String path, String copyFromPath, long copyFromRevision) {
+		if (ignoredDepth > 0 || ignoredFolders.contains(getName(path))) {
+			ignoredDepth++;
+		}
+	}
+
+	public void openDir(String path, long revision) {
+		addDir(path, null, -1);
+	}
+
+	public void changeDirProperty(String name, SVNPropertyValue value) {
+		/* properties are not exported */
+	}
+
+	public void closeDir() {
+		if (ignoredDepth > 0) {
+			ignoredDepth--;
+		}
+	}
+
+	public void addFile(String path, String copyFromPath, long copyFromRevision) {
+		if (ignoredDepth == 0) {
+			openEntry = path;
+			entryWritten = false;
+		}
+	}
+
+	public void openFile(String path, long revision) {
+		addFile(path, null, -1);
+	}
+
+	public void changeFileProperty(String path, String propertyName,
+			SVNPropertyValue propertyValue) {
+		/* properties are not exported */
+	}
+
+	public void applyTextDelta(String path, String baseChecksum)
+			throws SVNException {
+		if (!path.equals(openEntry)) {
+			return;
+		}
+		putNextEntry(path);
+		deltaProcessor.applyTextDelta(new ByteArrayInputStream(new byte[0]),
+				entryStream, false);
+	}
+
+	public OutputStream textDeltaChunk(String path, SVNDiffWindow diffWindow)
+			throws SVNException {
+		if (!path.equals(openEntry)) {
+			return NULL_STREAM;
+		}
+		return deltaProcessor.textDeltaChunk(diffWindow);
+	}
+
+	public void textDeltaEnd(String path) throws SVNException {
+		if (!path.equals(openEntry)) {
+			return;
+		}
+		deltaProcessor.textDeltaEnd();
+		closeEntry();
+	}
+
+	public void closeFile(String path, String textChecksum)
+			throws SVNException {
+		if (path.equals(openEntry) && !entryWritten) {
+			// file without content, no delta was sent
+			putNextEntry(path);
+			closeEntry();
+		}
+		openEntry = null;
+	}
+
+	public SVNCommitInfo closeEdit() {
+		return null;
+	}
+
+	public void abortEdit() {
+		/* the caller discards the zip */
+	}
+
+	private void putNextEntry(String path) throws SVNException {
+		try {
+			zipStream.putNextEntry(new ZipEntry(path));
+			entryWritten = true;
+			entries++;
+		} catch (IOException e) {
+			throw ioError(e);
+		}
+	}
+
+	private void closeEntry() throws SVNException {
+		try {
+			zipStream.closeEntry();
+		} catch (IOException e) {
+			throw ioError(e);
+		}
+	}
+
+	private static SVNException ioError(IOException e) {
+		return new SVNException(SVNErrorMessage.create(SVNErrorCode.IO_ERROR,
+				e.getMessage()), e);
+	}
+
+	private static String getName(String path) {
+		int slash = path.lastIndexOf('/');
+		return slash < 0 ? path : path.substring(slash + 1);
+	}
+}
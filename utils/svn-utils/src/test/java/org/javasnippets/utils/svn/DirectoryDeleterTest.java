@@ -0,0 +1,127 @@
+package org.javasnippets.utils.svn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Future;
+
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+public class DirectoryDeleterTest {
+
+	@Test
+	public void testDelete() throws Exception {
+		Path root = createTree();
+		DeleteResult result = new DirectoryDeleter(4).delete(root);
+		assertTrue(result.isSuccessful());
+		// 1 root + 3 dirs + 9 sub-dirs + 3 * 9 files
+		assertEquals(result.getDeletedCount(), 40);
+		assertFalse(Files.exists(root));
+	}
+
+	@Test
+	public void testDeleteMissingPath() throws Exception {
+		Path root = Files.createTempDirectory("deleter");
+		Files.delete(root);
+		DeleteResult result = DirectoryDeleter.getDefault().delete(root);
+		assertTrue(result.isSuccessful());
+		assertEquals(result.getDeletedCount(), 0);
+		// as before the parallel deleter
+		assertFalse(SVNUtils.deleteDirectory(root.toFile()));
+	}
+
+	@Test
+	public void testDeleteAsync() throws Exception {
+		Path root = createTree();
+		Future<DeleteResult> future = DirectoryDeleter.getDefault()
+				.deleteAsync(root);
+		// the path is free at once
+		assertFalse(Files.exists(root));
+		Files.createDirectory(root);
+
+		DeleteResult result = future.get();
+		assertTrue(result.isSuccessful());
+		assertFalse(Files.exists(result.getPath()));
+		assertEquals(result.getPath().getParent(), root.toAbsolutePath()
+				.getParent());
+		Files.delete(root);
+	}
+
+	@Test
+	public void testDeleteReportsFailures() throws Exception {
+		Path root = createTree();
+		final Path undeletable = root.resolve("dir1/sub2/file0");
+		DirectoryDeleter deleter = new DirectoryDeleter(4) {
+			@Override
+			void deletePath(Path path) throws IOException {
+				if (path.equals(undeletable)) {
+					throw new IOException("undeletable: " + path);
+				}
+				super.deletePath(path);
+			}
+		};
+		try {
+			DeleteResult result = deleter.delete(root);
+			assertFalse(result.isSuccessful());
+			// the file and every directory containing it
+			assertEquals(result.getFailures().keySet(), new HashSet<Path>(
+					Arrays.asList(undeletable, undeletable.getParent(),
+							root.resolve("dir1"), root)));
+			assertEquals(result.getFailures().get(undeletable).getMessage(),
+					"undeletable: " + undeletable);
+			assertTrue(result.getFailures().get(root)
+					instanceof DirectoryNotEmptyException);
+			// everything else is deleted
+			assertEquals(result.getDeletedCount(), 40 - 4);
+			assertTrue(Files.exists(undeletable));
+			assertFalse(Files.exists(root.resolve("dir0")));
+		} finally {
+			DirectoryDeleter.getDefault().delete(root);
+		}
+	}
+
+	@Test
+	public void testDeleteReportsReadOnlyDirectory() throws Exception {
+		Path root = createTree();
+		Path readOnly = root.resolve("dir2/sub0");
+		readOnly.toFile().setWritable(false);
+		try {
+			if (Files.isWritable(readOnly)) {
+				throw new SkipException("read-only directories are writable "
+						+ "for this user");
+			}
+			DeleteResult result = new DirectoryDeleter(2).delete(root);
+			assertFalse(result.isSuccessful());
+			assertTrue(result.getFailures().containsKey(
+					readOnly.resolve("file0")));
+			assertTrue(result.getFailures().containsKey(root));
+			assertTrue(Files.exists(readOnly.resolve("file0")));
+		} finally {
+			readOnly.toFile().setWritable(true);
+			DirectoryDeleter.getDefault().delete(root);
+		}
+	}
+
+	private static Path createTree() throws IOException {
+		Path root = Files.createTempDirectory("deleter");
+		for (int i = 0; i < 3; i++) {
+			Path dir = Files.createDirectory(root.resolve("dir" + i));
+			for (int j = 0; j < 3; j++) {
+				Path subDir = Files.createDirectory(dir.resolve("sub" + j));
+				for (int k = 0; k < 3; k++) {
+					Files.write(subDir.resolve("file" + k), new byte[] { 1 });
+				}
+			}
+		}
+		return root;
+	}
+}
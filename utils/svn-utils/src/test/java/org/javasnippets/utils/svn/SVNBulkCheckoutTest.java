@@ -0,0 +1,223 @@
+package org.javasnippets.utils.svn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.tmatesoft.svn.core.SVNException;
+
+public class SVNBulkCheckoutTest {
+
+	private SVNTestRepository repository;
+	private File targetRoot;
+
+	@BeforeClass
+	public void createRepository() throws Exception {
+		repository = new SVNTestRepository();
+		for (String module : new String[] { "a", "b", "c", "d" }) {
+			repository.commit("user", "trunk/" + module + "/pom.xml", module);
+		}
+	}
+
+	@AfterClass
+	public void disposeRepository() {
+		repository.dispose();
+	}
+
+	@BeforeMethod
+	public void createTargetRoot() throws Exception {
+		targetRoot = File.createTempFile("svn-bulk", "");
+		targetRoot.delete();
+		targetRoot.mkdirs();
+	}
+
+	@AfterMethod
+	public void deleteTargetRoot() {
+		SVNUtils.deleteDirectory(targetRoot);
+	}
+
+	@Test
+	public void testExportCollectAll() throws Exception {
+		List<SVNCheckoutJob> jobs = jobs("a", "missing", "b", "c", "d");
+		final AtomicInteger finished = new AtomicInteger();
+		SVNBulkCheckout bulk = new SVNBulkCheckout();
+		bulk.setMode(SVNBulkMode.EXPORT);
+		bulk.setThreads(3);
+		bulk.setMaxPerRepository(2);
+		bulk.setListener(new CountingListener(finished));
+		SVNBulkResult result = bulk.run(jobs);
+
+		assertEquals(result.getSucceeded().size(), 4);
+		assertEquals(result.getFailed().size(), 1);
+		assertTrue(result.getFailed().containsKey(jobs.get(1)));
+		assertEquals(finished.get(), 5);
+		assertTrue(new File(targetRoot, "a/pom.xml").exists());
+		assertFalse(new File(targetRoot, "a/.svn").exists());
+	}
+
+	@Test
+	public void testCheckoutFailFast() throws Exception {
+		List<SVNCheckoutJob> jobs = jobs("missing", "a", "b");
+		final AtomicInteger finished = new AtomicInteger();
+		SVNBulkCheckout bulk = new SVNBulkCheckout();
+		bulk.setThreads(1);
+		bulk.setFailFast(true);
+		CountingListener listener = new CountingListener(finished);
+		bulk.setListener(listener);
+		try {
+			bulk.run(jobs);
+			fail("failure expected");
+		} catch (SVNException e) {
+			/* expected */
+		}
+		assertEquals(finished.get(), 3);
+		assertEquals(listener.skipped.get(), 2);
+		// the progress reaches the total
+		assertEquals(listener.lastFinished, 3);
+		assertFalse(new File(targetRoot, "a").exists());
+	}
+
+	@Test
+	public void testExportReplacesTarget() throws Exception {
+		SVNBulkCheckout bulk = new SVNBulkCheckout();
+		bulk.setMode(SVNBulkMode.EXPORT);
+		assertTrue(bulk.run(jobs("a")).isSuccessful());
+		File stale = new File(targetRoot, "a/deleted-upstream.txt");
+		assertTrue(stale.createNewFile());
+		assertTrue(bulk.run(jobs("a")).isSuccessful());
+		assertFalse(stale.exists());
+		assertTrue(new File(targetRoot, "a/pom.xml").exists());
+	}
+
+	@Test
+	public void testCheckout() throws Exception {
+		SVNBulkResult result = new SVNBulkCheckout().run(jobs("a", "b"));
+		assertTrue(result.isSuccessful());
+		assertTrue(new File(targetRoot, "b/.svn").exists());
+	}
+
+	@Test
+	public void testLimitPerRepositoryBeforeThread() throws Exception {
+		SVNTestRepository other = new SVNTestRepository();
+		try {
+			List<SVNCheckoutJob> jobs = jobs("a", "b", "c", "d");
+			for (String module : new String[] { "e", "f" }) {
+				other.commit("user", "trunk/" + module + "/pom.xml", module);
+				jobs.add(new SVNCheckoutJob(other.getUrl("trunk/" + module),
+						null, new File(targetRoot, module)));
+			}
+			final String otherUrl = other.getUrl().toString();
+			final Map<Boolean, Integer> running = new HashMap<Boolean, Integer>();
+			final AtomicInteger maxRunning = new AtomicInteger();
+			SVNBulkCheckout bulk = new SVNBulkCheckout();
+			bulk.setMode(SVNBulkMode.EXPORT);
+			bulk.setThreads(4);
+			bulk.setMaxPerRepository(1);
+			bulk.setListener(new CountingListener(new AtomicInteger()) {
+				@Override
+				public void jobStarted(SVNCheckoutJob job) {
+					change(job, 1);
+				}
+
+				@Override
+				public void jobFinished(SVNCheckoutJob job, long millis,
+						int finishedJobs, int total) {
+					change(job, -1);
+				}
+
+				private void change(SVNCheckoutJob job, int delta) {
+					Boolean key = job.getUrl().toString().startsWith(otherUrl);
+					synchronized (running) {
+						Integer count = running.get(key);
+						count = (count == null ? 0 : count) + delta;
+						running.put(key, count);
+						maxRunning.set(Math.max(maxRunning.get(), count));
+					}
+				}
+			});
+			SVNBulkResult result = bulk.run(jobs);
+
+			assertTrue(result.isSuccessful());
+			assertEquals(result.getSucceeded().size(), 6);
+			// started jobs, not only svn-calls, are limited per repository
+			assertEquals(maxRunning.get(), 1);
+		} finally {
+			other.dispose();
+		}
+	}
+
+	@Test
+	public void testFailingListenerDoesNotFailJob() throws Exception {
+		List<SVNCheckoutJob> jobs = jobs("a", "b");
+		SVNBulkCheckout bulk = new SVNBulkCheckout();
+		bulk.setMode(SVNBulkMode.EXPORT);
+		bulk.setThreads(2);
+		bulk.setListener(new CountingListener(new AtomicInteger()) {
+			@Override
+			public void jobFinished(SVNCheckoutJob job, long millis,
+					int finishedJobs, int total) {
+				throw new IllegalStateException("listener failed");
+			}
+		});
+		SVNBulkResult result = bulk.run(jobs);
+
+		assertEquals(result.getSucceeded().size(), 2);
+		assertTrue(result.getFailed().isEmpty());
+	}
+
+	private List<SVNCheckoutJob> jobs(String... modules) throws SVNException {
+		List<SVNCheckoutJob> jobs = new ArrayList<SVNCheckoutJob>();
+		for (String module : modules) {
+			jobs.add(new SVNCheckoutJob(repository.getUrl("trunk/" + module),
+					null, new File(targetRoot, module)));
+		}
+		return jobs;
+	}
+
+	private static class CountingListener implements SVNBulkListener {
+
+		private final AtomicInteger finished;
+		private final AtomicInteger skipped = new AtomicInteger();
+		private volatile int lastFinished;
+
+		CountingListener(AtomicInteger finished) {
+			this.finished = finished;
+		}
+
+		public void jobStarted(SVNCheckoutJob job) {
+			/* ignore */
+		}
+
+		public void jobFinished(SVNCheckoutJob job, long millis,
+				int finishedJobs, int total) {
+			finished.incrementAndGet();
+			lastFinished = finishedJobs;
+		}
+
+		public void jobFailed(SVNCheckoutJob job, SVNException failure,
+				int finishedJobs, int total) {
+			finished.incrementAndGet();
+			lastFinished = finishedJobs;
+		}
+
+		public void jobSkipped(SVNCheckoutJob job, int finishedJobs,
+				int total) {
+			finished.incrementAndGet();
+			skipped.incrementAndGet();
+			lastFinished = finishedJobs;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package org.javasnippets.utils.svn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.javasnippets.utils.metrics.Instrumentations;
+import org.javasnippets.utils.metrics.MetricsInstrumentation;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.tmatesoft.svn.core.SVNLogEntry;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
+
+public class SVNClientTest {
+
+	private SVNTestRepository repository;
+
+	@BeforeClass
+	public void createRepository() throws Exception {
+		repository = new SVNTestRepository();
+		repository.commit("usera", "trunk/a/file1.txt", "1");
+		repository.commit("userb", "trunk/b/file1.txt", "1");
+	}
+
+	@AfterClass
+	public void disposeRepository() {
+		repository.dispose();
+	}
+
+	@Test
+	public void testSessionsAreReused() throws Exception {
+		final SVNClient client = new SVNClient(null, 2, 60000);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (int i = 0; i < 40; i++) {
+				results.add(executor.submit(new Callable<Long>() {
+					public Long call() throws Exception {
+						client.svnLog(repository.getUrl(), new SVNLogQuery(),
+								new ISvnObjectReceiver<SVNLogEntry>() {
+									public void receive(SvnTarget target,
+											SVNLogEntry logEntry) {
+										/* ignore */
+									}
+								});
+						return client.getLatestRevision(repository.getUrl());
+					}
+				}));
+			}
+			for (Future<Long> result : results) {
+				assertEquals(result.get().longValue(), 2);
+			}
+		} finally {
+			executor.shutdown();
+			client.close();
+		}
+		assertTrue(client.getCreatedSessionCount() <= 2);
+		assertEquals(client.getStatistics().get("log").getCount(), 40);
+		assertEquals(client.getStatistics().get("latest-revision").getCount(),
+				40);
+		assertEquals(client.getIdleSessionCount(), 0);
+	}
+
+	@Test
+	public void testIdleSessionsAreEvicted() throws Exception {
+		// the timeout is long enough that the evictor-thread does not interfere
+		SVNClient client = new SVNClient(null, 2, 60000);
+		try {
+			assertEquals(client.info(repository.getUrl("trunk/a"), null)
+					.getRevision(), 2);
+			assertEquals(client.getIdleSessionCount(), 1);
+			long now = System.currentTimeMillis();
+			client.evictIdleSessions(now);
+			assertEquals(client.getIdleSessionCount(), 1);
+			client.evictIdleSessions(now + 60001);
+			assertEquals(client.getIdleSessionCount(), 0);
+		} finally {
+			client.close();
+		}
+	}
+
+	@Test
+	public void testPoolPerRepositoryRoot() throws Exception {
+		SVNTestRepository other = new SVNTestRepository();
+		SVNClient client = new SVNClient(null, 1, 60000);
+		try {
+			other.commit("user", "trunk/file1.txt", "1");
+			// both are file-urls of the same host
+			client.getLatestRevision(repository.getUrl("trunk/a"));
+			client.getLatestRevision(other.getUrl("trunk"));
+			assertEquals(client.getIdleSessionCount(), 2);
+			// the root is known, the session of the pool is reused
+			client.getLatestRevision(repository.getUrl("trunk/b"));
+			client.getLatestRevision(repository.getUrl());
+			assertEquals(client.getIdleSessionCount(), 2);
+			assertEquals(client.getCreatedSessionCount(), 2);
+		} finally {
+			client.close();
+			other.dispose();
+		}
+	}
+
+	@Test
+	public void testInstrumentation() throws Exception {
+		MetricsInstrumentation metrics = new MetricsInstrumentation();
+		Instrumentations.set(metrics);
+		SVNClient client = new SVNClient(null, 2, 60000);
+		try {
+			client.getLatestRevision(repository.getUrl());
+			client.getLatestRevision(repository.getUrl());
+		} finally {
+			client.close();
+			Instrumentations.set(null);
+		}
+		assertEquals(metrics.getCounter("svn.session.created"), 1);
+		assertEquals(metrics.getCounter("svn.session.reused"), 1);
+		assertEquals(metrics.getCounter("svn.roundtrips"), 2);
+		assertEquals(metrics.getHistogram("svn.latest-revision").getCount(), 2);
+	}
+}
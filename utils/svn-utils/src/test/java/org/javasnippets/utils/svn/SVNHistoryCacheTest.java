@@ -0,0 +1,134 @@
+package org.javasnippets.utils.svn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SVNHistoryCacheTest {
+
+	private SVNTestRepository repository;
+	private File cacheFile;
+
+	@BeforeMethod
+	public void createRepository() throws Exception {
+		repository = new SVNTestRepository();
+		repository.commit("usera", "trunk/a/file1.txt", "1");
+		repository.commit("userb", "trunk/b/file1.txt", "1");
+		repository.commit("usera", "trunk/a/sub/file2.txt", "2");
+		cacheFile = File.createTempFile("svn-history", ".cache");
+		cacheFile.delete();
+	}
+
+	@AfterMethod
+	public void disposeRepository() {
+		repository.dispose();
+		cacheFile.delete();
+	}
+
+	@Test
+	public void testIncrementalUpdate() throws Exception {
+		SVNHistoryCache cache = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		assertEquals(cache.update(), 4); // including revision 0
+		assertEquals(cache.update(), 0);
+		repository.commit("userb", "trunk/b/file1.txt", "changed");
+		assertEquals(cache.update(), 1);
+		assertEquals(cache.getLastRevision(), 4);
+
+		// reopened cache is answered from disk
+		SVNHistoryCache reopened = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		assertEquals(reopened.getLastRevision(), 4);
+		assertEquals(reopened.size(), 5);
+		assertEquals(reopened.update(), 0);
+	}
+
+	@Test
+	public void testQueries() throws Exception {
+		repository.commit("userb", "trunk/b/file1.txt", "changed");
+		SVNHistoryCache cache = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		cache.update();
+
+		assertEquals(revisions(cache.getRevisions("/trunk/a", null, null)),
+				Arrays.asList(1L, 3L));
+		assertEquals(revisions(cache.getRevisions("trunk/a/sub/", null,
+				null)), Arrays.asList(3L));
+		assertEquals(revisions(cache.getRevisionsByAuthor("userb", null,
+				null)), Arrays.asList(2L, 4L));
+		assertEquals(cache.getLatestEntry("/trunk/a").getRevision(), 3);
+		assertNull(cache.getLatestEntry("/trunk/c"));
+
+		Map<String, SVNHistoryEntry> latest = cache.getLatestEntries(Arrays
+				.asList("/trunk/a", "/trunk/b"));
+		assertEquals(latest.get("/trunk/b").getRevision(), 4);
+		assertEquals(latest.get("/trunk/b").getChangedPaths()
+				.get("/trunk/b/file1.txt"), Character.valueOf('M'));
+	}
+
+	@Test
+	public void testDateRangeOnSubPath() throws Exception {
+		// distinct commit-times
+		Thread.sleep(10);
+		repository.commit("usera", "trunk/a/file1.txt", "changed");
+		Thread.sleep(10);
+		repository.commit("userb", "trunk/b/file1.txt", "changed");
+		Thread.sleep(10);
+		repository.commit("usera", "trunk/a/sub/file2.txt", "changed");
+		SVNHistoryCache cache = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		cache.update();
+		Date time3 = new Date(cache.getEntry(3).getTime());
+		Date time4 = new Date(cache.getEntry(4).getTime());
+		Date time5 = new Date(cache.getEntry(5).getTime());
+
+		assertEquals(revisions(cache.getRevisions("/trunk/a", time4, time5)),
+				Arrays.asList(4L));
+		assertEquals(revisions(cache.getRevisions("/trunk/a", time4, null)),
+				Arrays.asList(4L, 6L));
+		assertEquals(revisions(cache.getRevisions("/trunk/a/sub", null,
+				time5)), Arrays.asList(3L));
+		assertEquals(revisions(cache.getRevisions(null, time4, time5)),
+				Arrays.asList(4L, 5L));
+		assertEquals(revisions(cache.getRevisions("/trunk/b", null, time3)),
+				Arrays.asList(2L));
+		assertEquals(revisions(cache.getRevisionsByAuthor("userb", time4,
+				null)), Arrays.asList(5L));
+	}
+
+	@Test
+	public void testTruncatedFileIsRepaired() throws Exception {
+		SVNHistoryCache cache = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		cache.update();
+		RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+		try {
+			file.setLength(file.length() - 12);
+		} finally {
+			file.close();
+		}
+		SVNHistoryCache reopened = new SVNHistoryCache(cacheFile,
+				repository.getUrl());
+		assertEquals(reopened.getLastRevision(), 2);
+		assertEquals(reopened.update(), 1);
+		assertEquals(reopened.getLatestEntry("/trunk/a").getRevision(), 3);
+	}
+
+	private static List<Long> revisions(List<SVNHistoryEntry> entries) {
+		Long[] revisions = new Long[entries.size()];
+		for (int i = 0; i < revisions.length; i++) {
+			revisions[i] = entries.get(i).getRevision();
+		}
+		return Arrays.asList(revisions);
+	}
+}
@@ -0,0 +1,115 @@
+package org.javasnippets.utils.svn;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNNodeKind;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.auth.BasicAuthenticationManager;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.ISVNEditor;
+import org.tmatesoft.svn.core.io.SVNRepository;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.io.diff.SVNDeltaGenerator;
+
+/**
+ * Local FSFS-repository for tests.
+ */
+public class SVNTestRepository {
+
+	private final File directory;
+	private final SVNURL url;
+
+	/**
+	 * Creates a new empty repository in a temporary directory.
+	 */
+	public SVNTestRepository() throws IOException, SVNException {
+		FSRepositoryFactory.setup();
+		directory = File.createTempFile("svn-utils-test", "");
+		directory.delete();
+		url = SVNRepositoryFactory.createLocalRepository(directory, true,
+				false);
+	}
+
+	public SVNURL getUrl() {
+		return url;
+	}
+
+	public SVNURL getUrl(String path) throws SVNException {
+		return url.appendPath(path, false);
+	}
+
+	/**
+	 * Commits a single file, adding missing parent directories.
+	 *
+	 * @param author
+	 *            author of the commit
+	 * @param path
+	 *            repository-path of the file, e.g. "trunk/a/file.txt"
+	 * @param content
+	 *            content of the file, null deletes the path
+	 * @return committed revision
+	 */
+	public long commit(String author, String path, String content)
+			throws SVNException {
+		SVNRepository repository = SVNRepositoryFactory.create(url);
+		try {
+			repository.setAuthenticationManager(new BasicAuthenticationManager(
+					author, ""));
+			long head = repository.getLatestRevision();
+			String[] segments = path.split("/");
+			// node kinds must be known before the commit-editor is opened
+			boolean[] dirExists = new boolean[segments.length - 1];
+			String dir = "";
+			for (int i = 0; i < dirExists.length; i++) {
+				dir = dir.length() == 0 ? segments[i] : dir + "/" + segments[i];
+				dirExists[i] = repository.checkPath(dir, head) !=
+						SVNNodeKind.NONE;
+			}
+			boolean fileExists = repository.checkPath(path, head) !=
+					SVNNodeKind.NONE;
+			ISVNEditor editor = repository.getCommitEditor("changed " + path,
+					null);
+			editor.openRoot(-1);
+			dir = "";
+			for (int i = 0; i < dirExists.length; i++) {
+				dir = dir.length() == 0 ? segments[i] : dir + "/" + segments[i];
+				if (dirExists[i]) {
+					editor.openDir(dir, -1);
+				} else {
+					editor.addDir(dir, null, -1);
+				}
+			}
+			if (content == null) {
+				editor.deleteEntry(path, -1);
+			} else {
+				if (fileExists) {
+					editor.openFile(path, -1);
+				} else {
+					editor.addFile(path, null, -1);
+				}
+				editor.applyTextDelta(path, null);
+				String checksum = new SVNDeltaGenerator().sendDelta(path,
+						new ByteArrayInputStream(content.getBytes()), editor,
+						true);
+				editor.closeFile(path, checksum);
+			}
+			for (int i = 0; i < segments.length - 1; i++) {
+				editor.closeDir();
+			}
+			editor.closeDir();
+			return editor.closeEdit().getNewRevision();
+		} finally {
+			repository.closeSession();
+		}
+	}
+
+	/**
+	 * Deletes the repository.
+	 */
+	public void dispose() {
+		SVNUtils.deleteDirectory(directory);
+	}
+}
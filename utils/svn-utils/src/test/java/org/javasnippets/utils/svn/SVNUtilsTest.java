@@ -1,21 +1,282 @@
 package org.javasnippets.utils.svn;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.javasnippets.utils.svn.SVNUtils;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
+import org.tmatesoft.svn.core.SVNErrorCode;
+import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.SVNProperties;
 import org.tmatesoft.svn.core.SVNRevisionProperty;
 import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.wc2.ISvnObjectReceiver;
+import org.tmatesoft.svn.core.wc2.SvnTarget;
 
 public class SVNUtilsTest {
 
+	private SVNTestRepository repository;
+
+	@BeforeClass
+	public void createRepository() throws Exception {
+		repository = new SVNTestRepository();
+		for (int i = 1; i <= 10; i++) {
+			String module = i % 2 == 1 ? "a" : "b";
+			repository.commit("user" + module, "trunk/" + module + "/file"
+					+ i + ".txt", "content " + i);
+		}
+	}
+
+	@AfterClass
+	public void disposeRepository() {
+		repository.dispose();
+	}
+
+	@Test
+	public void testLogStreamingWithPathFilter() throws Exception {
+		SVNLogQuery query = new SVNLogQuery(1, SVNLogQuery.HEAD);
+		query.setPathFilter(Arrays.asList("trunk/a"));
+		final List<Long> revisions = new ArrayList<Long>();
+		long delivered = SVNUtils.svnLog(repository.getUrl(), query,
+				new ISvnObjectReceiver<SVNLogEntry>() {
+					public void receive(SvnTarget target, SVNLogEntry logEntry) {
+						revisions.add(logEntry.getRevision());
+					}
+				});
+		assertEquals(delivered, 5);
+		assertEquals(revisions, Arrays.asList(1L, 3L, 5L, 7L, 9L));
+	}
+
+	@Test
+	public void testLogStreamingWithLimit() throws Exception {
+		SVNLogQuery query = new SVNLogQuery(SVNLogQuery.HEAD, 1);
+		query.setLimit(2);
+		query.setPathFilter(Arrays.asList("/trunk/b/"));
+		final List<Long> revisions = new ArrayList<Long>();
+		SVNUtils.svnLog(repository.getUrl(), query,
+				new ISvnObjectReceiver<SVNLogEntry>() {
+					public void receive(SvnTarget target, SVNLogEntry logEntry) {
+						revisions.add(logEntry.getRevision());
+					}
+				});
+		assertEquals(revisions, Arrays.asList(10L, 8L));
+	}
+
+	@Test
+	public void testLogIteratorPaging() throws Exception {
+		SVNLogQuery query = new SVNLogQuery(1, SVNLogQuery.HEAD);
+		query.setPageSize(3);
+		List<Long> revisions = new ArrayList<Long>();
+		SVNLogIterator iterator = SVNUtils.svnLogIterator(
+				repository.getUrl(), query);
+		try {
+			while (iterator.hasNext()) {
+				SVNLogEntry logEntry = iterator.next();
+				assertTrue(logEntry.getChangedPaths().isEmpty());
+				revisions.add(logEntry.getRevision());
+			}
+		} finally {
+			iterator.close();
+		}
+		assertEquals(revisions,
+				Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L));
+	}
+
+	@Test
+	public void testLogIteratorDescendingWithFilterAndLimit() throws Exception {
+		SVNLogQuery query = new SVNLogQuery(SVNLogQuery.HEAD, 0);
+		query.setPageSize(2);
+		query.setLimit(3);
+		query.setPathFilter(Arrays.asList("/trunk/a"));
+		List<Long> revisions = new ArrayList<Long>();
+		SVNLogIterator iterator = SVNUtils.svnLogIterator(
+				repository.getUrl(), query);
+		try {
+			while (iterator.hasNext()) {
+				SVNLogEntry logEntry = iterator.next();
+				assertFalse(logEntry.getChangedPaths().isEmpty());
+				revisions.add(logEntry.getRevision());
+			}
+		} finally {
+			iterator.close();
+		}
+		assertEquals(revisions, Arrays.asList(9L, 7L, 5L));
+	}
+
+	@Test
+	public void testSyncWorkingCopy() throws Exception {
+		File workingCopy = File.createTempFile("svn-utils-wc", "");
+		workingCopy.delete();
+		try {
+			String path = workingCopy.getPath();
+			String urlA = repository.getUrl("trunk/a").toString();
+			String urlB = repository.getUrl("trunk/b").toString();
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, 3, false),
+					SVNSyncResult.CHECKED_OUT);
+			assertFalse(new File(workingCopy, "file5.txt").exists());
+
+			// local changes are reverted, unversioned files removed
+			File file1 = new File(workingCopy, "file1.txt");
+			write(file1, "local change");
+			File unversioned = new File(workingCopy, "unversioned.txt");
+			write(unversioned, "unversioned");
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, true),
+					SVNSyncResult.UPDATED);
+			assertEquals(read(file1), "content 1");
+			assertFalse(unversioned.exists());
+			assertTrue(new File(workingCopy, "file9.txt").exists());
+
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlB, -1, false),
+					SVNSyncResult.SWITCHED);
+			assertTrue(new File(workingCopy, "file10.txt").exists());
+			assertFalse(file1.exists());
+
+			// no working copy at all
+			SVNUtils.deleteDirectory(new File(workingCopy, ".svn"));
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, false),
+					SVNSyncResult.RECHECKED_OUT);
+			assertTrue(file1.exists());
+		} finally {
+			SVNUtils.deleteDirectory(workingCopy);
+		}
+	}
+
+	@Test
+	public void testSyncWorkingCopyToUnknownRevisionKeepsLocalChanges()
+			throws Exception {
+		File workingCopy = File.createTempFile("svn-utils-wc", "");
+		workingCopy.delete();
+		try {
+			String path = workingCopy.getPath();
+			String urlA = repository.getUrl("trunk/a").toString();
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, false),
+					SVNSyncResult.CHECKED_OUT);
+			File file1 = new File(workingCopy, "file1.txt");
+			write(file1, "local change");
+			File unversioned = new File(workingCopy, "unversioned.txt");
+			write(unversioned, "unversioned");
+			try {
+				SVNUtils.syncWorkingCopy(path, urlA, 99, false);
+				fail("revision 99 does not exist");
+			} catch (SVNException e) {
+				assertEquals(e.getErrorMessage().getErrorCode(),
+						SVNErrorCode.FS_NO_SUCH_REVISION);
+			}
+			assertEquals(read(file1), "local change");
+			assertEquals(read(unversioned), "unversioned");
+			assertTrue(new File(workingCopy, ".svn").isDirectory());
+		} finally {
+			SVNUtils.deleteDirectory(workingCopy);
+		}
+	}
+
+	@Test
+	public void testSyncBrokenWorkingCopy() throws Exception {
+		File workingCopy = File.createTempFile("svn-utils-wc", "");
+		workingCopy.delete();
+		try {
+			String path = workingCopy.getPath();
+			String urlA = repository.getUrl("trunk/a").toString();
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, false),
+					SVNSyncResult.CHECKED_OUT);
+			File unversioned = new File(workingCopy, "unversioned.txt");
+			write(unversioned, "unversioned");
+			assertTrue(new File(workingCopy, ".svn/wc.db").delete());
+
+			// the local state is unknown, so nothing is deleted
+			try {
+				SVNUtils.syncWorkingCopy(path, urlA, -1, false);
+				fail("broken working copy replaced without revert");
+			} catch (SVNException e) {
+				assertEquals(e.getErrorMessage().getErrorCode(),
+						SVNErrorCode.WC_LEFT_LOCAL_MOD);
+			}
+			assertTrue(unversioned.exists());
+
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, true),
+					SVNSyncResult.RECHECKED_OUT);
+			assertFalse(unversioned.exists());
+			assertEquals(read(new File(workingCopy, "file1.txt")),
+					"content 1");
+		} finally {
+			SVNUtils.deleteDirectory(workingCopy);
+		}
+	}
+
+	@Test
+	public void testSyncWorkingCopyReportsUndeletableFiles() throws Exception {
+		File workingCopy = File.createTempFile("svn-utils-wc", "");
+		workingCopy.delete();
+		File locked = new File(workingCopy, "out/locked");
+		try {
+			String path = workingCopy.getPath();
+			String urlA = repository.getUrl("trunk/a").toString();
+			assertEquals(SVNUtils.syncWorkingCopy(path, urlA, -1, false),
+					SVNSyncResult.CHECKED_OUT);
+			locked.mkdirs();
+			File unversioned = new File(locked, "unversioned.txt");
+			write(unversioned, "unversioned");
+			locked.setWritable(false);
+			if (locked.canWrite()) {
+				throw new SkipException("read-only directories are writable "
+						+ "for this user");
+			}
+			try {
+				SVNUtils.syncWorkingCopy(path, urlA, -1, true);
+				fail("undeletable file not reported");
+			} catch (SVNException e) {
+				assertEquals(e.getErrorMessage().getErrorCode(),
+						SVNErrorCode.IO_ERROR);
+			}
+			assertTrue(unversioned.exists());
+		} finally {
+			locked.setWritable(true);
+			SVNUtils.deleteDirectory(workingCopy);
+		}
+	}
+
+	private static void write(File file, String content) throws IOException {
+		FileWriter writer = new FileWriter(file);
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		FileReader reader = new FileReader(file);
+		try {
+			StringBuilder content = new StringBuilder();
+			char[] buffer = new char[1024];
+			int len;
+			while ((len = reader.read(buffer)) > 0) {
+				content.append(buffer, 0, len);
+			}
+			return content.toString();
+		} finally {
+			reader.close();
+		}
+	}
+
 	@Test(enabled = false)
 	public void testCheckout() throws Exception {
 		String urlStr = "http://host:80/svn/repo1/trunk/dev/";
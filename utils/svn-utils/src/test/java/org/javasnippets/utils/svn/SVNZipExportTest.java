@@ -0,0 +1,135 @@
+package org.javasnippets.utils.svn;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+
+public class SVNZipExportTest {
+
+	private SVNTestRepository repository;
+
+	@BeforeClass
+	public void createRepository() throws Exception {
+		repository = new SVNTestRepository();
+		repository.commit("user", "trunk/pom.xml", "pom 1");
+		repository.commit("user", "trunk/src/Main.java", "class Main");
+		repository.commit("user", "trunk/target/Main.class", "binary");
+		repository.commit("user", "trunk/src/target/Other.java", "other");
+		repository.commit("user", "trunk/empty.txt", "");
+		repository.commit("user", "trunk/pom.xml", "pom 2");
+	}
+
+	@AfterClass
+	public void disposeRepository() {
+		repository.dispose();
+	}
+
+	@Test
+	public void testExportToStream() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long entries = SVNUtils.exportToZip(repository.getUrl("trunk"), null,
+				out, new String[] { "target" });
+
+		Map<String, String> content = readZip(out.toByteArray());
+		assertEquals(entries, 3);
+		assertEquals(content.keySet().toString(),
+				"[empty.txt, pom.xml, src/Main.java]");
+		assertEquals(content.get("pom.xml"), "pom 2");
+		assertEquals(content.get("src/Main.java"), "class Main");
+		assertEquals(content.get("empty.txt"), "");
+	}
+
+	@Test
+	public void testExportRevisionToFile() throws Exception {
+		File zip = File.createTempFile("svn-export", ".zip");
+		try {
+			long entries = SVNUtils.exportToZip(zip.getPath(),
+					repository.getUrl("trunk"), SVNRevision.create(3), null);
+			assertEquals(entries, 3);
+			ZipFile zipFile = new ZipFile(zip);
+			try {
+				assertEquals(read(zipFile.getInputStream(zipFile
+						.getEntry("pom.xml"))), "pom 1");
+				assertEquals(zipFile.size(), 3);
+			} finally {
+				zipFile.close();
+			}
+		} finally {
+			zip.delete();
+		}
+	}
+
+	@Test
+	public void testFailedExportKeepsFile() throws Exception {
+		File folder = Files.createTempDirectory("svn-export").toFile();
+		File zip = new File(folder, "export.zip");
+		Files.write(zip.toPath(), "old".getBytes("UTF-8"));
+		try {
+			SVNUtils.exportToZip(zip.getPath(),
+					repository.getUrl("trunk/pom.xml"), null, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// a file can not be exported
+		}
+		try {
+			assertEquals(read(Files.newInputStream(zip.toPath())), "old");
+			// no temporary file is left
+			assertEquals(folder.list().length, 1);
+		} finally {
+			zip.delete();
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void testExportIgnoredRoot() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long entries = SVNUtils.exportToZip(repository.getUrl("trunk/target"),
+				null, out, new String[] { "target" });
+		assertEquals(entries, 0);
+		assertEquals(readZip(out.toByteArray()).size(), 0);
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testExportFile() throws Exception {
+		SVNUtils.exportToZip(repository.getUrl("trunk/pom.xml"), null,
+				new ByteArrayOutputStream(), null);
+	}
+
+	private static Map<String, String> readZip(byte[] zip) throws IOException {
+		Map<String, String> content = new TreeMap<String, String>();
+		ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip));
+		ZipEntry entry;
+		while ((entry = in.getNextEntry()) != null) {
+			content.put(entry.getName(), read(in));
+		}
+		in.close();
+		return content;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int len;
+		while ((len = in.read(buffer)) > 0) {
+			out.write(buffer, 0, len);
+		}
+		return out.toString("UTF-8");
+	}
+}
@@ -0,0 +1,407 @@
+package org.javasnippets.utils.xml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.Validate;
+import org.apache.log4j.Logger;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.FormatStack;
+import org.jdom2.util.NamespaceStack;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.core.BaseException;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.WriterWrapper;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
+
+/**
+ * Gedrosseltes DEBUG-Logging von XML-Strukturen. Die Ausgabe wird in einem
+ * Durchlauf serialisiert, dabei werden konfigurierte Elemente geschwärzt und
+ * die Serialisierung nach der maximalen Länge abgebrochen. Es wird nur jeder
+ * n-te Aufruf ausgegeben (Sampling).
+ *
+ * @author ckroeger
+ */
+public class XmlDebugLogger {
+
+	/** Default für die maximale Länge der Ausgabe in Zeichen. */
+	public static final int DEFAULT_MAX_LENGTH = 4096;
+
+	private static final String CONTENT_REMOVED = "... content removed ...";
+	private static final String TRUNCATED = " ... truncated ...";
+
+	private final AtomicLong calls = new AtomicLong();
+
+	private volatile int sampleRate = 1;
+	private volatile int maxLength = DEFAULT_MAX_LENGTH;
+	private volatile Set<String> redactedElements = Collections.emptySet();
+
+	/**
+	 * Liefert jeden wievielten Aufruf geloggt wird.
+	 *
+	 * @return Sampling-Rate (1 = jeder Aufruf)
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Setzt jeden wievielten Aufruf geloggt wird.
+	 *
+	 * @param sampleRate
+	 *            Sampling-Rate, 1 = jeder Aufruf (> 0)
+	 */
+	public void setSampleRate(int sampleRate) {
+		Validate.isTrue(sampleRate > 0, "sampleRate must be > 0");
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Liefert die maximale Länge einer Ausgabe in Zeichen.
+	 *
+	 * @return maximale Länge
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Setzt die maximale Länge einer Ausgabe in Zeichen. Danach wird die
+	 * Serialisierung abgebrochen.
+	 *
+	 * @param maxLength
+	 *            maximale Länge (> 0)
+	 */
+	public void setMaxLength(int maxLength) {
+		Validate.isTrue(maxLength > 0, "maxLength must be > 0");
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Setzt die Namen der Elemente, deren Inhalt in der Ausgabe ersetzt wird.
+	 *
+	 * @param elementNames
+	 *            Element-Namen (NULLABLE)
+	 */
+	public void setRedactedElements(Collection<String> elementNames) {
+		if (elementNames == null || elementNames.isEmpty()) {
+			this.redactedElements = Collections.emptySet();
+		} else {
+			this.redactedElements = Collections
+					.unmodifiableSet(new HashSet<String>(elementNames));
+		}
+	}
+
+	/**
+	 * Liefert die Namen der Elemente, deren Inhalt in der Ausgabe ersetzt
+	 * wird.
+	 *
+	 * @return Element-Namen (!NULL)
+	 */
+	public Set<String> getRedactedElements() {
+		return redactedElements;
+	}
+
+	/**
+	 * Liefert ob der aktuelle Aufruf geloggt werden soll. Erhöht den
+	 * Sampling-Zähler nur, wenn DEBUG aktiv ist.
+	 *
+	 * @param log
+	 *            der {@link Logger} (!NULL)
+	 * @return true wenn geloggt werden soll
+	 */
+	public boolean isEnabled(Logger log) {
+		if (!log.isDebugEnabled()) {
+			return false;
+		}
+		int rate = sampleRate;
+		return rate == 1 || calls.getAndIncrement() % rate == 0;
+	}
+
+	/**
+	 * Loggt auf Level DEBUG ein {@link Document}.
+	 *
+	 * @param log
+	 *            der {@link Logger} (!NULL)
+	 * @param msg
+	 *            die Meldung die vorangestellt wird
+	 * @param document
+	 *            das {@link Document} (!NULL)
+	 */
+	public void logDocument(Logger log, String msg, Document document) {
+		if (!isEnabled(log)) {
+			return;
+		}
+		BoundedWriter out = new BoundedWriter(msg, maxLength);
+		try {
+			newOutputter().output(document, out);
+		} catch (IOException e) {
+			if (!out.isTruncated()) {
+				log.debug(msg + "<failed to write document: " + e + ">");
+				return;
+			}
+		}
+		log.debug(out.toString());
+	}
+
+	/**
+	 * Loggt auf Level DEBUG ein {@link Element}.
+	 *
+	 * @param log
+	 *            der {@link Logger} (!NULL)
+	 * @param msg
+	 *            die Meldung die vorangestellt wird
+	 * @param element
+	 *            das {@link Element} (!NULL)
+	 */
+	public void logElement(Logger log, String msg, Element element) {
+		if (!isEnabled(log)) {
+			return;
+		}
+		BoundedWriter out = new BoundedWriter(msg, maxLength);
+		try {
+			newOutputter().output(element, out);
+		} catch (IOException e) {
+			if (!out.isTruncated()) {
+				log.debug(msg + "<failed to write element: " + e + ">");
+				return;
+			}
+		}
+		log.debug(out.toString());
+	}
+
+	/**
+	 * Loggt auf Level DEBUG die XStream-XML-Struktur eines Objektes.
+	 *
+	 * @param log
+	 *            der {@link Logger} (!NULL)
+	 * @param msg
+	 *            die Meldung die vorangestellt wird
+	 * @param object
+	 *            das Objekt welches als XML ausgegeben werden soll
+	 */
+	public void logObject(Logger log, String msg, Object object) {
+		if (!isEnabled(log)) {
+			return;
+		}
+		BoundedWriter out = new BoundedWriter(msg, maxLength);
+		HierarchicalStreamWriter writer = new PrettyPrintWriter(out);
+		Set<String> redacted = redactedElements;
+		if (!redacted.isEmpty()) {
+			writer = new RedactingWriter(writer, redacted);
+		}
+		try {
+			XStreamHolder.XSTREAM.marshal(object, writer);
+			writer.flush();
+		} catch (BaseException e) {
+			// XStream verpackt die IOException des BoundedWriter
+			if (!out.isTruncated()) {
+				log.debug(msg + "<failed to write object: " + e + ">");
+				return;
+			}
+		}
+		log.debug(out.toString());
+	}
+
+	private XMLOutputter newOutputter() {
+		Set<String> redacted = redactedElements;
+		if (redacted.isEmpty()) {
+			return new XMLOutputter(Format.getPrettyFormat());
+		}
+		return new XMLOutputter(Format.getPrettyFormat(),
+				new RedactingOutputProcessor(redacted));
+	}
+
+	/**
+	 * Erzeugt die XStream-Instanz erst beim ersten Objekt-Logging. XStream ist
+	 * nach der Konfiguration threadsicher beim Serialisieren.
+	 */
+	private static final class XStreamHolder {
+		static final XStream XSTREAM = new XStream(new DomDriver());
+	}
+
+	/**
+	 * Sammelt Zeichen bis zur maximalen Länge und bricht danach mit einer
+	 * {@link TruncatedException} ab.
+	 */
+	static final class BoundedWriter extends Writer {
+
+		private final StringBuilder buffer;
+		private final int limit;
+		private boolean truncated = false;
+
+		BoundedWriter(String prefix, int maxLength) {
+			String start = prefix == null ? "" : prefix;
+			this.buffer = new StringBuilder(start.length()
+					+ Math.min(maxLength, 1024) + TRUNCATED.length());
+			this.buffer.append(start);
+			this.limit = start.length() + maxLength;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			if (truncated) {
+				throw new TruncatedException();
+			}
+			int free = limit - buffer.length();
+			if (len <= free) {
+				buffer.append(cbuf, off, len);
+				return;
+			}
+			buffer.append(cbuf, off, free);
+			truncated = true;
+			buffer.append(TRUNCATED);
+			throw new TruncatedException();
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			if (truncated) {
+				throw new TruncatedException();
+			}
+			int free = limit - buffer.length();
+			if (len <= free) {
+				buffer.append(str, off, off + len);
+				return;
+			}
+			buffer.append(str, off, off + free);
+			truncated = true;
+			buffer.append(TRUNCATED);
+			throw new TruncatedException();
+		}
+
+		boolean isTruncated() {
+			return truncated;
+		}
+
+		@Override
+		public void flush() {
+			/* nothing to flush */
+		}
+
+		@Override
+		public void close() {
+			/* nothing to close */
+		}
+
+		@Override
+		public String toString() {
+			return buffer.toString();
+		}
+	}
+
+	/**
+	 * Signalisiert das Erreichen der maximalen Länge.
+	 */
+	static final class TruncatedException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		TruncatedException() {
+			super("output truncated");
+		}
+	}
+
+	/**
+	 * Ersetzt beim Schreiben den Inhalt konfigurierter JDOM-Elemente.
+	 */
+	static final class RedactingOutputProcessor extends
+			AbstractXMLOutputProcessor {
+
+		private final Set<String> redacted;
+
+		RedactingOutputProcessor(Set<String> redacted) {
+			this.redacted = redacted;
+		}
+
+		@Override
+		protected void printElement(Writer out, FormatStack fstack,
+				NamespaceStack nstack, Element element) throws IOException {
+			if (redacted.contains(element.getName())) {
+				Element replacement = new Element(element.getName(),
+						element.getNamespace());
+				replacement.setText(CONTENT_REMOVED);
+				super.printElement(out, fstack, nstack, replacement);
+				return;
+			}
+			super.printElement(out, fstack, nstack, element);
+		}
+	}
+
+	/**
+	 * Ersetzt beim Serialisieren den Inhalt konfigurierter XStream-Knoten.
+	 */
+	static final class RedactingWriter extends WriterWrapper {
+
+		private final Set<String> redacted;
+		private int suppressedDepth = 0;
+
+		RedactingWriter(HierarchicalStreamWriter wrapped, Set<String> redacted) {
+			super(wrapped);
+			this.redacted = redacted;
+		}
+
+		@Override
+		public void startNode(String name) {
+			if (suppressedDepth > 0) {
+				suppressedDepth++;
+				return;
+			}
+			super.startNode(name);
+			redactIfConfigured(name);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public void startNode(String name, Class clazz) {
+			if (suppressedDepth > 0) {
+				suppressedDepth++;
+				return;
+			}
+			super.startNode(name, clazz);
+			redactIfConfigured(name);
+		}
+
+		private void redactIfConfigured(String name) {
+			if (redacted.contains(name)) {
+				super.setValue(CONTENT_REMOVED);
+				suppressedDepth = 1;
+			}
+		}
+
+		@Override
+		public void endNode() {
+			if (suppressedDepth > 1) {
+				suppressedDepth--;
+				return;
+			}
+			suppressedDepth = 0;
+			super.endNode();
+		}
+
+		@Override
+		public void addAttribute(String name, String value) {
+			if (suppressedDepth == 0) {
+				super.addAttribute(name, value);
+			}
+		}
+
+		@Override
+		public void setValue(String text) {
+			if (suppressedDepth == 0) {
+				super.setValue(text);
+			}
+		}
+	}
+}
@@ -1,21 +1,24 @@
 package org.javasnippets.utils.xml;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.Validate;
 import org.apache.log4j.Logger;
+import org.javasnippets.utils.metrics.Instrumentations;
 import org.jdom2.Document;
 import org.jdom2.Element;
+import org.jdom2.JDOMException;
 import org.jdom2.filter.Filters;
 import org.jdom2.input.SAXBuilder;
-import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
 import org.jdom2.xpath.XPathExpression;
 import org.jdom2.xpath.XPathFactory;
@@ -32,6 +35,81 @@ public class XmlUtils {
 
 	private static final Logger log = Logger.getLogger(XmlUtils.class);
 
+	private static final String METRIC_PARSE = "xml.parse";
+	private static final String METRIC_BYTES_READ = "xml.bytes.read";
+	private static final String METRIC_XPATH_COMPILE = "xml.xpath.compile";
+	private static final String METRIC_XPATH_EVALUATE = "xml.xpath.evaluate";
+	private static final String METRIC_MATERIALIZE = "xml.materialize";
+
+	private static final int XPATH_CACHE_SIZE = 256;
+
+	private static volatile XmlDebugLogger debugLogger = new XmlDebugLogger();
+
+	private static volatile boolean logReadXml = false;
+
+	/**
+	 * Kompilierte XPath-Ausdrücke je Thread. Ein {@link XPathExpression} ist
+	 * nicht thread-sicher (auch {@link XPathExpression#clone()} teilt den
+	 * Jaxen-Navigator), daher hat jeder Thread einen eigenen Cache.
+	 */
+	private static final ThreadLocal<Map<String, XPathExpression<Element>>> xPathCache = new ThreadLocal<Map<String, XPathExpression<Element>>>() {
+		@Override
+		protected Map<String, XPathExpression<Element>> initialValue() {
+			return new LinkedHashMap<String, XPathExpression<Element>>(16,
+					0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(
+						Map.Entry<String, XPathExpression<Element>> eldest) {
+					return size() > XPATH_CACHE_SIZE;
+				}
+			};
+		}
+	};
+
+	/**
+	 * Liefert den {@link XmlDebugLogger} für die DEBUG-Ausgaben dieser Klasse.
+	 * 
+	 * @return der {@link XmlDebugLogger} (!NULL)
+	 */
+	public static XmlDebugLogger getDebugLogger() {
+		return debugLogger;
+	}
+
+	/**
+	 * Liefert ob die gelesenen Dokumente auf DEBUG ausgegeben werden.
+	 * 
+	 * @return true wenn die Ausgabe eingeschaltet ist
+	 */
+	public static boolean isLogReadXml() {
+		return logReadXml;
+	}
+
+	/**
+	 * Schaltet die DEBUG-Ausgabe der von {@link #getDocumentFromXml(String)}
+	 * und {@link #getDocumentFromFile(File)} gelesenen Dokumente ein oder aus
+	 * (Default: aus). Auch eingeschaltet wird nur bei DEBUG und gemäß dem
+	 * Sampling von {@link #getDebugLogger()} serialisiert.
+	 * 
+	 * @param logReadXml
+	 *            true um die Ausgabe einzuschalten
+	 */
+	public static void setLogReadXml(boolean logReadXml) {
+		XmlUtils.logReadXml = logReadXml;
+	}
+
+	/**
+	 * Setzt den {@link XmlDebugLogger} für die DEBUG-Ausgaben dieser Klasse.
+	 * 
+	 * @param debugLogger
+	 *            der {@link XmlDebugLogger} (!NULL)
+	 */
+	public static void setDebugLogger(XmlDebugLogger debugLogger) {
+		Validate.notNull(debugLogger);
+		XmlUtils.debugLogger = debugLogger;
+	}
+
 	/**
 	 * Liefert zu einem XPath-Ausdruck eine Liste der gefundenen Elemente.
 	 * 
@@ -46,13 +124,37 @@ public class XmlUtils {
 			Validate.notNull(doc);
 			Validate.notEmpty(xPath);
 		}
-		XPathFactory instance = XPathFactory.instance();
-		XPathExpression<Element> startDateExpression = instance.compile(xPath,
-				Filters.element());
-		List<Element> foundElements = startDateExpression.evaluate(doc);
+		XPathExpression<Element> expression = compileXPath(xPath);
+		long start = Instrumentations.startTime();
+		List<Element> foundElements = expression.evaluate(doc);
+		Instrumentations.time(METRIC_XPATH_EVALUATE, start);
 		return foundElements;
 	}
 
+	/**
+	 * Liefert den kompilierten XPath-Ausdruck für Elemente. Die zuletzt
+	 * verwendeten Ausdrücke werden je Thread zwischengespeichert und nicht
+	 * erneut kompiliert. Der Ausdruck darf nur vom aufrufenden Thread
+	 * ausgewertet werden.
+	 * 
+	 * @param xPath
+	 *            der XPath-Ausdruck (!EMPTY)
+	 * @return der kompilierte {@link XPathExpression} (!NULL)
+	 */
+	public static XPathExpression<Element> compileXPath(String xPath) {
+		Validate.notEmpty(xPath);
+		Map<String, XPathExpression<Element>> cache = xPathCache.get();
+		XPathExpression<Element> expression = cache.get(xPath);
+		if (expression == null) {
+			long start = Instrumentations.startTime();
+			expression = XPathFactory.instance().compile(xPath,
+					Filters.element());
+			Instrumentations.time(METRIC_XPATH_COMPILE, start);
+			cache.put(xPath, expression);
+		}
+		return expression;
+	}
+
 	/**
 	 * Liefert zu einem XPath-Ausdruck ein gefundenes Element. Wenn nicht genau
 	 * ein Element gefunden wurde, gibt es eine Fehlermeldung.
@@ -103,14 +205,15 @@ public class XmlUtils {
 	public static Document getDocumentFromXml(String xml) {
 		Validate.notEmpty(xml);
 		try {
-			InputStream stream = new ByteArrayInputStream(xml.getBytes("UTF-8"));
+			long start = Instrumentations.startTime();
+			byte[] bytes = xml.getBytes("UTF-8");
+			InputStream stream = new ByteArrayInputStream(bytes);
 			Document document = new SAXBuilder().build(stream);
+			Instrumentations.time(METRIC_PARSE, start);
+			Instrumentations.count(METRIC_BYTES_READ, bytes.length);
 
-			if (log.isDebugEnabled()) {
-				StringWriter sw = new StringWriter();
-				XMLOutputter out = new XMLOutputter(Format.getPrettyFormat());
-				out.output(document, sw);
-				// log.debug("Read Xml = " + sw.toString());
+			if (logReadXml) {
+				debugLogger.logDocument(log, "Read Xml = ", document);
 			}
 			return document;
 		} catch (Exception e) {
@@ -122,6 +225,34 @@ public class XmlUtils {
 
 	}
 
+	/**
+	 * Lädt die XML-Datei und erzeugt ein {@link Document}-Objekt. Die Kodierung
+	 * wird aus der XML-Deklaration ermittelt.
+	 * 
+	 * @param file
+	 *            die XML-Datei (!NULL)
+	 * @return das {@link Document} (!NULL)
+	 * @throws IOException
+	 *             wenn die Datei nicht gelesen werden kann
+	 */
+	public static Document getDocumentFromFile(File file) throws IOException {
+		Validate.notNull(file);
+		try {
+			long start = Instrumentations.startTime();
+			Document document = new SAXBuilder().build(file);
+			Instrumentations.time(METRIC_PARSE, start);
+			Instrumentations.count(METRIC_BYTES_READ, file.length());
+
+			if (logReadXml) {
+				debugLogger.logDocument(log, "Read Xml = ", document);
+			}
+			return document;
+		} catch (JDOMException e) {
+			throw new IOException("Failed to read XML " + file + ", message = "
+					+ e.getMessage(), e);
+		}
+	}
+
 	/**
 	 * Lädt aus dem übergebenen Classpath die XML-Datei und erzeugt ein
 	 * {@link Document}-Objekt.
@@ -198,7 +329,8 @@ public class XmlUtils {
 	private static final int[] NONEFOUND = new int[] { -1, -1 };
 
 	/**
-	 * Log auf Level DEBUG die XML-Struktur des übergebenen Objektes
+	 * Log auf Level DEBUG die XML-Struktur des übergebenen Objektes. Sampling,
+	 * Kürzung und Schwärzung erfolgen über {@link #getDebugLogger()}.
 	 * 
 	 * @param log
 	 *            der {@link Logger} (!NULL)
@@ -209,11 +341,7 @@ public class XmlUtils {
 	 */
 	public static void logObject(final Logger log, Object object, String msg) {
 		assert log != null;
-		if (log.isDebugEnabled()) {
-			String xml = getXMLStringOfObject(object);
-			log.debug(msg);
-			log.debug(xml);
-		}
+		debugLogger.logObject(log, msg + "\n", object);
 	}
 
 	/**
@@ -237,7 +365,9 @@ public class XmlUtils {
 	 */
 	public static Object materialize(String objectAsXML) {
 		Validate.notEmpty(objectAsXML);
+		long start = Instrumentations.startTime();
 		Object fromXML = new XStream(new DomDriver()).fromXML(objectAsXML);
+		Instrumentations.time(METRIC_MATERIALIZE, start);
 		return fromXML;
 	}
 
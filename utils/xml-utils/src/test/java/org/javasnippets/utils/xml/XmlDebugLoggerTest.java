@@ -0,0 +1,161 @@
+package org.javasnippets.utils.xml;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class XmlDebugLoggerTest {
+
+	private static final String XML = "<account><name>n</name>"
+			+ "<credentials><password>secret</password>"
+			+ "<token><value>t0ken</value></token></credentials></account>";
+
+	private Logger log;
+	private List<String> messages;
+
+	@BeforeMethod
+	public void setUp() {
+		messages = new ArrayList<String>();
+		log = Logger.getLogger(XmlDebugLoggerTest.class.getName() + "."
+				+ System.nanoTime());
+		log.setAdditivity(false);
+		log.setLevel(Level.DEBUG);
+		log.addAppender(new AppenderSkeleton() {
+			@Override
+			protected void append(LoggingEvent event) {
+				messages.add(event.getRenderedMessage());
+			}
+
+			public boolean requiresLayout() {
+				return false;
+			}
+
+			public void close() {
+				/* nothing to close */
+			}
+		});
+	}
+
+	@Test
+	public void testLogDocument() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.logDocument(log, "doc = ",
+				XmlUtils.getDocumentFromXml(XML));
+		assertEquals(messages.size(), 1);
+		assertTrue(messages.get(0).startsWith("doc = "));
+		assertTrue(messages.get(0).contains("<password>secret</password>"));
+	}
+
+	@Test
+	public void testTruncation() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setMaxLength(20);
+		Element element = new Element("text");
+		element.setText("0123456789012345678901234567890123456789");
+		debugLogger.logElement(log, "element = ", element);
+		assertEquals(messages, Arrays.asList("element = <text>01234567890123"
+				+ " ... truncated ..."));
+	}
+
+	@Test
+	public void testTruncationOfObject() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setMaxLength(10);
+		debugLogger.logObject(log, "object = ", new Account());
+		assertEquals(messages,
+				Arrays.asList("object = <org.javas ... truncated ..."));
+	}
+
+	@Test
+	public void testRedactDocument() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setRedactedElements(Arrays.asList("credentials"));
+		Document document = XmlUtils.getDocumentFromXml(XML);
+		debugLogger.logDocument(log, "doc = ", document);
+		assertEquals(messages.size(), 1);
+		String message = messages.get(0);
+		assertTrue(message.contains("<name>n</name>"), message);
+		assertTrue(message
+				.contains("<credentials>... content removed ...</credentials>"),
+				message);
+		assertFalse(message.contains("secret"), message);
+		assertFalse(message.contains("t0ken"), message);
+		assertFalse(message.contains("<token>"), message);
+		// the document itself is not changed
+		assertEquals(XmlUtils.getXPathElement(document,
+				"/account/credentials/password").getText(), "secret");
+	}
+
+	@Test
+	public void testRedactObject() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setRedactedElements(Arrays.asList("credentials"));
+		debugLogger.logObject(log, "object = ", new Account());
+		assertEquals(messages.size(), 1);
+		String message = messages.get(0);
+		assertTrue(message.contains("<name>n</name>"), message);
+		assertTrue(message
+				.contains("<credentials>... content removed ...</credentials>"),
+				message);
+		assertFalse(message.contains("secret"), message);
+		assertFalse(message.contains("t0ken"), message);
+		assertFalse(message.contains("<token>"), message);
+		// the nodes after the redacted one are written again
+		assertTrue(message.contains("<id>7</id>"), message);
+	}
+
+	@Test
+	public void testSampling() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setSampleRate(3);
+		for (int i = 0; i < 7; i++) {
+			Element element = new Element("call");
+			element.setText(String.valueOf(i));
+			debugLogger.logElement(log, "", element);
+		}
+		assertEquals(messages, Arrays.asList("<call>0</call>",
+				"<call>3</call>", "<call>6</call>"));
+	}
+
+	@Test
+	public void testSamplingCountsOnlyDebugCalls() {
+		XmlDebugLogger debugLogger = new XmlDebugLogger();
+		debugLogger.setSampleRate(2);
+		log.setLevel(Level.INFO);
+		for (int i = 0; i < 3; i++) {
+			assertFalse(debugLogger.isEnabled(log));
+		}
+		log.setLevel(Level.DEBUG);
+		assertTrue(debugLogger.isEnabled(log));
+		assertFalse(debugLogger.isEnabled(log));
+		assertTrue(debugLogger.isEnabled(log));
+	}
+
+	static class Account {
+		String name = "n";
+		Credentials credentials = new Credentials();
+		int id = 7;
+	}
+
+	static class Credentials {
+		String password = "secret";
+		Token token = new Token();
+	}
+
+	static class Token {
+		String value = "t0ken";
+	}
+}
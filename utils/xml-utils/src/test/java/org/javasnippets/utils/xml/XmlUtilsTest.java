@@ -0,0 +1,103 @@
+package org.javasnippets.utils.xml;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.spi.LoggingEvent;
+
+import org.jdom2.Document;
+import org.jdom2.Element;
+import org.jdom2.xpath.XPathExpression;
+import org.testng.annotations.Test;
+
+public class XmlUtilsTest {
+
+	private static final String XML = "<a xmlns:x=\"urn:x\"><x:b>1</x:b>"
+			+ "<x:b>2</x:b></a>";
+
+	@Test
+	public void testLogReadXmlIsSwitchedOff() {
+		final List<String> messages = new ArrayList<String>();
+		Logger log = Logger.getLogger(XmlUtils.class);
+		Level level = log.getLevel();
+		AppenderSkeleton appender = new AppenderSkeleton() {
+			@Override
+			protected void append(LoggingEvent event) {
+				messages.add(event.getRenderedMessage());
+			}
+
+			public boolean requiresLayout() {
+				return false;
+			}
+
+			public void close() {
+				/* nothing to close */
+			}
+		};
+		log.addAppender(appender);
+		log.setLevel(Level.DEBUG);
+		try {
+			XmlUtils.getDocumentFromXml(XML);
+			assertEquals(messages.size(), 0);
+			XmlUtils.setLogReadXml(true);
+			XmlUtils.getDocumentFromXml(XML);
+			assertEquals(messages.size(), 1);
+		} finally {
+			XmlUtils.setLogReadXml(false);
+			log.setLevel(level);
+			log.removeAppender(appender);
+		}
+	}
+
+	@Test
+	public void testCompileXPathIsCachedPerThread() throws Exception {
+		final XPathExpression<Element> expression = XmlUtils
+				.compileXPath("//b");
+		assertSame(XmlUtils.compileXPath("//b"), expression);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			XPathExpression<Element> other = executor.submit(
+					new Callable<XPathExpression<Element>>() {
+						public XPathExpression<Element> call() {
+							return XmlUtils.compileXPath("//b");
+						}
+					}).get();
+			assertNotSame(other, expression);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentXPath() throws Exception {
+		final Document document = XmlUtils.getDocumentFromXml(XML);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 200; i++) {
+				results.add(executor.submit(new Callable<Integer>() {
+					public Integer call() {
+						return XmlUtils.getXPathElements(document,
+								"//*[local-name()='b']").size();
+					}
+				}));
+			}
+			for (Future<Integer> result : results) {
+				assertEquals(result.get().intValue(), 2);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.javasnippets.utils.zip;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Computes the configured digests of one zip-entry at a time. Supported are
+ * <code>CRC32</code>, <code>CRC32C</code> (Java 9 and later) and every
+ * {@link MessageDigest}-algorithm like <code>SHA-256</code> or
+ * <code>MD5</code>. Not thread-safe.
+ *
+ * @author ckroeger
+ */
+class EntryDigester {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final String[] algorithms;
+	private final Checksum[] checksums;
+	private final MessageDigest[] digests;
+
+	/**
+	 * Creates a new digester.
+	 *
+	 * @param algorithms
+	 *            names of the algorithms (!NULL)
+	 * @throws IllegalArgumentException
+	 *             if an algorithm is not supported
+	 */
+	EntryDigester(String[] algorithms) {
+		this.algorithms = algorithms.clone();
+		this.checksums = new Checksum[algorithms.length];
+		this.digests = new MessageDigest[algorithms.length];
+		for (int i = 0; i < algorithms.length; i++) {
+			String algorithm = algorithms[i];
+			if ("CRC32".equalsIgnoreCase(algorithm)) {
+				checksums[i] = new CRC32();
+			} else if ("CRC32C".equalsIgnoreCase(algorithm)) {
+				checksums[i] = createCrc32c();
+			} else {
+				try {
+					digests[i] = MessageDigest.getInstance(algorithm);
+				} catch (NoSuchAlgorithmException e) {
+					throw new IllegalArgumentException(
+							"unsupported digest-algorithm: " + algorithm, e);
+				}
+			}
+		}
+	}
+
+	private static Checksum createCrc32c() {
+		try {
+			return (Checksum) Class.forName("java.util.zip.CRC32C")
+					.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("CRC32C needs Java 9", e);
+		}
+	}
+
+	/**
+	 * Determines the names of the algorithms.
+	 *
+	 * @return names of the algorithms (!NULL)
+	 */
+	String[] getAlgorithms() {
+		return algorithms.clone();
+	}
+
+	/**
+	 * Adds data of the current entry.
+	 */
+	void update(byte[] buffer, int offset, int length) {
+		for (int i = 0; i < algorithms.length; i++) {
+			if (checksums[i] != null) {
+				checksums[i].update(buffer, offset, length);
+			} else {
+				digests[i].update(buffer, offset, length);
+			}
+		}
+	}
+
+	/**
+	 * Completes the current entry and resets the digester for the next one.
+	 *
+	 * @return hex-encoded digests in the order of the algorithms
+	 */
+	String[] finish() {
+		String[] result = new String[algorithms.length];
+		for (int i = 0; i < algorithms.length; i++) {
+			if (checksums[i] != null) {
+				result[i] = String.format("%08x", checksums[i].getValue());
+				checksums[i].reset();
+			} else {
+				result[i] = toHex(digests[i].digest());
+			}
+		}
+		return result;
+	}
+
+	private static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,94 @@
+package org.javasnippets.utils.zip;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The files of a folder as {@link ZipSourceEntry}s. The folder is walked
+ * lazily, so the first entry is available before the whole tree is listed.
+ * Entry-names and ignored folders behave like in
+ * {@link ZipUtils#zipFolder(String, String, String[])}.
+ *
+ * @author ckroeger
+ */
+class FolderEntries implements Iterable<ZipSourceEntry> {
+
+	private final File root;
+	private final Set<String> ignoredFolders;
+
+	FolderEntries(File root, Set<String> ignoredFolders) {
+		this.root = root;
+		this.ignoredFolders = ignoredFolders;
+	}
+
+	public Iterator<ZipSourceEntry> iterator() {
+		return new Walker();
+	}
+
+	/**
+	 * Depth-first walk with a stack of pending files and folders.
+	 */
+	private final class Walker implements Iterator<ZipSourceEntry> {
+
+		private final Deque<File> pending = new ArrayDeque<File>();
+		private File next;
+
+		Walker() {
+			pending.push(root);
+		}
+
+		public boolean hasNext() {
+			while (next == null && !pending.isEmpty()) {
+				File node = pending.pop();
+				if (node.isFile()) {
+					next = node;
+				} else if (node.isDirectory()
+						&& !ignoredFolders.contains(node.getName())) {
+					String[] children = node.list();
+					if (children == null) {
+						continue;
+					}
+					// reversed, so the stack pops them in listing-order
+					for (int i = children.length - 1; i >= 0; i--) {
+						pending.push(new File(node, children[i]));
+					}
+				}
+			}
+			return next != null;
+		}
+
+		public ZipSourceEntry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final File file = next;
+			next = null;
+			final String name = file.toString().substring(
+					root.toString().length() + 1);
+			return new ZipSourceEntry() {
+				public String getName() {
+					return name;
+				}
+
+				public long getTime() {
+					return file.lastModified();
+				}
+
+				public InputStream openStream() throws IOException {
+					return new FileInputStream(file);
+				}
+			};
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
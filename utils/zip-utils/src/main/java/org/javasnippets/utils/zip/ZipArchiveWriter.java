@@ -0,0 +1,521 @@
+package org.javasnippets.utils.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Streaming zip-writer for huge archives. Unlike
+ * {@link java.util.zip.ZipOutputStream} the central-directory records are not
+ * kept in memory: beyond {@link #DEFAULT_MEMORY_THRESHOLD} bytes they are
+ * spilled to a temporary file and copied behind the entries on
+ * {@link #finish()}. Zip64-records are written as soon as an entry, an offset
+ * or the number of entries exceeds the classic limits (4 GB, 65535 entries).
+ * <p>
+ * Entries are deflated and followed by a data-descriptor, so the target needs
+ * no random access and no extra buffering. The data-descriptor has 8-byte
+ * sizes exactly when the entry exceeds 4 GB, as
+ * {@link java.util.zip.ZipInputStream} expects. Entry names are not checked
+ * for duplicates, as this would need memory per entry. Not thread-safe.
+ *
+ * @author ckroeger
+ */
+public class ZipArchiveWriter implements Closeable {
+
+	/** Central-directory bytes kept in memory before spilling to disk. */
+	public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int DATA_DESCRIPTOR = 0x08074b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int ZIP64_END = 0x06064b50;
+	private static final int ZIP64_LOCATOR = 0x07064b50;
+	private static final int END = 0x06054b50;
+
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final int ZIP64_MAGIC_COUNT = 0xFFFF;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int VERSION_DEFLATE = 20;
+	private static final int VERSION_ZIP64 = 45;
+	/** Data-descriptor follows (bit 3), names are UTF-8 (bit 11). */
+	private static final int FLAGS = 0x0808;
+	private static final int METHOD_DEFLATED = 8;
+
+	private final OutputStream out;
+	private final Deflater deflater;
+	private final byte[] buffer;
+	private final byte[] deflateBuffer;
+	private final CRC32 crc = new CRC32();
+	private final CentralDirectory centralDirectory;
+	private final long startNanos = System.nanoTime();
+
+	private ZipCancellation cancellation;
+	private boolean flushEntries = false;
+	private long written = 0;
+	private long read = 0;
+	private long entries = 0;
+	private boolean finished = false;
+
+	/**
+	 * Creates a writer with the default compression and memory-threshold,
+	 * spilling into the temp-directory.
+	 *
+	 * @param out
+	 *            target of the archive (!NULL)
+	 */
+	public ZipArchiveWriter(OutputStream out) {
+		this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_MEMORY_THRESHOLD, null);
+	}
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param out
+	 *            target of the archive (!NULL)
+	 * @param level
+	 *            compression-level, see {@link Deflater}
+	 * @param memoryThreshold
+	 *            central-directory bytes kept in memory (&gt;= 0)
+	 * @param spillDirectory
+	 *            directory of the spill-file, null for the temp-directory
+	 */
+	public ZipArchiveWriter(OutputStream out, int level, int memoryThreshold,
+			File spillDirectory) {
+		if (out == null || memoryThreshold < 0) {
+			throw new IllegalArgumentException();
+		}
+		// the headers are written in small pieces
+		this.out = new BufferedOutputStream(out, 64 * 1024);
+		this.deflater = new Deflater(level, true);
+		this.buffer = new byte[64 * 1024];
+		this.deflateBuffer = new byte[64 * 1024];
+		this.centralDirectory = new CentralDirectory(memoryThreshold,
+				spillDirectory);
+	}
+
+	/**
+	 * Sets the {@link ZipCancellation} checked after every buffer. An
+	 * interrupt of the writing thread cancels as well.
+	 *
+	 * @param cancellation
+	 *            the {@link ZipCancellation} (NULLABLE)
+	 */
+	public void setCancellation(ZipCancellation cancellation) {
+		this.cancellation = cancellation;
+	}
+
+	/**
+	 * Sets if the target is flushed after every entry, so a consumer gets
+	 * the data of small entries at once instead of when the buffer is full.
+	 *
+	 * @param flushEntries
+	 *            true to flush after every entry
+	 */
+	public void setFlushEntries(boolean flushEntries) {
+		this.flushEntries = flushEntries;
+	}
+
+	/**
+	 * Writes an entry with the content of the stream. The stream is read to
+	 * the end but not closed.
+	 *
+	 * @param name
+	 *            name of the entry, '/'-separated (!EMPTY)
+	 * @param time
+	 *            modification-time in milliseconds
+	 * @param content
+	 *            content of the entry (!NULL)
+	 * @return uncompressed size of the entry
+	 * @throws IOException
+	 *             if the stream can not be read or the target not written
+	 */
+	public long writeEntry(String name, long time, InputStream content)
+			throws IOException {
+		return writeEntry(name, time, content, null);
+	}
+
+	/**
+	 * Writes an entry and updates the digester with every read buffer.
+	 *
+	 * @param digester
+	 *            the {@link EntryDigester}, null for none
+	 */
+	long writeEntry(String name, long time, InputStream content,
+			EntryDigester digester) throws IOException {
+		if (name == null || name.isEmpty() || content == null) {
+			throw new IllegalArgumentException();
+		}
+		if (finished) {
+			throw new IllegalStateException("archive is finished");
+		}
+		checkCancelled();
+		byte[] nameBytes = name.getBytes(UTF8);
+		if (nameBytes.length > 0xFFFF) {
+			throw new ZipException("entry-name too long: " + name);
+		}
+		long offset = written;
+		int dosTime = toDosTime(time);
+		writeInt(LOCAL_HEADER);
+		writeShort(VERSION_DEFLATE);
+		writeShort(FLAGS);
+		writeShort(METHOD_DEFLATED);
+		writeInt(dosTime);
+		// crc and sizes follow in the data-descriptor
+		writeInt(0);
+		writeInt(0);
+		writeInt(0);
+		writeShort(nameBytes.length);
+		writeShort(0);
+		writeBytes(nameBytes, 0, nameBytes.length);
+
+		long compressedStart = written;
+		crc.reset();
+		deflater.reset();
+		long size = 0;
+		int len;
+		while ((len = content.read(buffer)) >= 0) {
+			checkCancelled();
+			if (len == 0) {
+				continue;
+			}
+			crc.update(buffer, 0, len);
+			if (digester != null) {
+				digester.update(buffer, 0, len);
+			}
+			size += len;
+			deflater.setInput(buffer, 0, len);
+			while (!deflater.needsInput()) {
+				deflate();
+			}
+		}
+		deflater.finish();
+		while (!deflater.finished()) {
+			deflate();
+		}
+		long compressedSize = written - compressedStart;
+		long crcValue = crc.getValue();
+		read += size;
+
+		writeInt(DATA_DESCRIPTOR);
+		writeInt((int) crcValue);
+		// readers take 8-byte sizes only above the 4-byte range (unlike the
+		// Zip64-extra of the central directory, which starts at the magic)
+		if (size > ZIP64_MAGIC || compressedSize > ZIP64_MAGIC) {
+			writeLong(compressedSize);
+			writeLong(size);
+		} else {
+			writeInt((int) compressedSize);
+			writeInt((int) size);
+		}
+
+		centralDirectory.add(nameBytes, dosTime, crcValue, compressedSize,
+				size, offset);
+		entries++;
+		if (flushEntries) {
+			out.flush();
+		}
+		return size;
+	}
+
+	private void checkCancelled() throws InterruptedIOException {
+		if ((cancellation != null && cancellation.isCancelled())
+				|| Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("zip cancelled");
+		}
+	}
+
+	private void deflate() throws IOException {
+		int len = deflater.deflate(deflateBuffer);
+		if (len > 0) {
+			writeBytes(deflateBuffer, 0, len);
+		}
+	}
+
+	/**
+	 * Writes the central-directory and the end-records. The target is flushed
+	 * but not closed, no entries can be added afterwards.
+	 *
+	 * @throws IOException
+	 *             if the target can not be written
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		try {
+			long centralStart = written;
+			centralDirectory.copyTo(this);
+			long centralSize = written - centralStart;
+			if (entries >= ZIP64_MAGIC_COUNT || centralStart >= ZIP64_MAGIC
+					|| centralSize >= ZIP64_MAGIC) {
+				long zip64End = written;
+				writeInt(ZIP64_END);
+				writeLong(44);
+				writeShort(VERSION_ZIP64);
+				writeShort(VERSION_ZIP64);
+				writeInt(0);
+				writeInt(0);
+				writeLong(entries);
+				writeLong(entries);
+				writeLong(centralSize);
+				writeLong(centralStart);
+				writeInt(ZIP64_LOCATOR);
+				writeInt(0);
+				writeLong(zip64End);
+				writeInt(1);
+			}
+			int count = (int) Math.min(entries, ZIP64_MAGIC_COUNT);
+			writeInt(END);
+			writeShort(0);
+			writeShort(0);
+			writeShort(count);
+			writeShort(count);
+			writeInt((int) Math.min(centralSize, ZIP64_MAGIC));
+			writeInt((int) Math.min(centralStart, ZIP64_MAGIC));
+			writeShort(0);
+			out.flush();
+		} finally {
+			centralDirectory.dispose();
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Finishes the archive and closes the target.
+	 */
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Releases the resources without completing the archive, e.g. after a
+	 * failure. The target is not closed.
+	 */
+	public void abort() {
+		finished = true;
+		centralDirectory.dispose();
+		deflater.end();
+	}
+
+	/**
+	 * Determines the number of written entries.
+	 *
+	 * @return number of entries
+	 */
+	public long getEntryCount() {
+		return entries;
+	}
+
+	/**
+	 * Determines the uncompressed bytes read from the entry-contents.
+	 *
+	 * @return number of bytes read
+	 */
+	public long getBytesRead() {
+		return read;
+	}
+
+	/**
+	 * Determines the bytes written to the target.
+	 *
+	 * @return number of bytes written
+	 */
+	public long getBytesWritten() {
+		return written;
+	}
+
+	/**
+	 * Determines the time since the writer was created.
+	 *
+	 * @return elapsed nanoseconds
+	 */
+	public long getElapsedNanos() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Determines the throughput of the uncompressed content.
+	 *
+	 * @return bytes read per second
+	 */
+	public long getBytesReadPerSecond() {
+		long nanos = Math.max(1, getElapsedNanos());
+		return (long) (read * 1e9 / nanos);
+	}
+
+	private void writeBytes(byte[] bytes, int offset, int length)
+			throws IOException {
+		out.write(bytes, offset, length);
+		written += length;
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		written += 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		writeShort((int) (value & 0xffff));
+		writeShort((int) ((value >>> 16) & 0xffff));
+	}
+
+	private void writeLong(long value) throws IOException {
+		writeInt(value & ZIP64_MAGIC);
+		writeInt(value >>> 32);
+	}
+
+	/**
+	 * Converts a java-time to the MS-DOS-format of zip-files.
+	 */
+	static int toDosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return (year - 1980) << 25
+				| (calendar.get(Calendar.MONTH) + 1) << 21
+				| calendar.get(Calendar.DAY_OF_MONTH) << 16
+				| calendar.get(Calendar.HOUR_OF_DAY) << 11
+				| calendar.get(Calendar.MINUTE) << 5
+				| calendar.get(Calendar.SECOND) >> 1;
+	}
+
+	/**
+	 * Central-directory-records in memory up to a threshold, then in a
+	 * spill-file.
+	 */
+	private static final class CentralDirectory {
+
+		private final int memoryThreshold;
+		private final File spillDirectory;
+		private final ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		private final byte[] record = new byte[46 + 28];
+		private File spillFile;
+		private OutputStream spill;
+
+		CentralDirectory(int memoryThreshold, File spillDirectory) {
+			this.memoryThreshold = memoryThreshold;
+			this.spillDirectory = spillDirectory;
+		}
+
+		void add(byte[] name, int dosTime, long crc, long compressedSize,
+				long size, long offset) throws IOException {
+			int extraLength = (size >= ZIP64_MAGIC ? 8 : 0)
+					+ (compressedSize >= ZIP64_MAGIC ? 8 : 0)
+					+ (offset >= ZIP64_MAGIC ? 8 : 0);
+			int pos = 0;
+			pos = put(record, pos, CENTRAL_HEADER, 4);
+			int version = extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFLATE;
+			pos = put(record, pos, version, 2); // made by
+			pos = put(record, pos, version, 2); // needed
+			pos = put(record, pos, FLAGS, 2);
+			pos = put(record, pos, METHOD_DEFLATED, 2);
+			pos = put(record, pos, dosTime, 4);
+			pos = put(record, pos, crc, 4);
+			pos = put(record, pos, Math.min(compressedSize, ZIP64_MAGIC), 4);
+			pos = put(record, pos, Math.min(size, ZIP64_MAGIC), 4);
+			pos = put(record, pos, name.length, 2);
+			pos = put(record, pos, extraLength > 0 ? extraLength + 4 : 0, 2);
+			pos = put(record, pos, 0, 2); // comment
+			pos = put(record, pos, 0, 2); // disk
+			pos = put(record, pos, 0, 2); // internal attributes
+			pos = put(record, pos, 0, 4); // external attributes
+			pos = put(record, pos, Math.min(offset, ZIP64_MAGIC), 4);
+			OutputStream target = getTarget();
+			target.write(record, 0, pos);
+			target.write(name);
+			if (extraLength > 0) {
+				pos = put(record, 0, ZIP64_EXTRA_ID, 2);
+				pos = put(record, pos, extraLength, 2);
+				if (size >= ZIP64_MAGIC) {
+					pos = put(record, pos, size, 8);
+				}
+				if (compressedSize >= ZIP64_MAGIC) {
+					pos = put(record, pos, compressedSize, 8);
+				}
+				if (offset >= ZIP64_MAGIC) {
+					pos = put(record, pos, offset, 8);
+				}
+				target.write(record, 0, pos);
+			}
+		}
+
+		private OutputStream getTarget() throws IOException {
+			if (spill != null) {
+				return spill;
+			}
+			if (memory.size() < memoryThreshold) {
+				return memory;
+			}
+			spillFile = File.createTempFile("zip-central", ".tmp",
+					spillDirectory);
+			spill = new BufferedOutputStream(new FileOutputStream(spillFile),
+					64 * 1024);
+			return spill;
+		}
+
+		void copyTo(ZipArchiveWriter writer) throws IOException {
+			byte[] bytes = memory.toByteArray();
+			writer.writeBytes(bytes, 0, bytes.length);
+			if (spill == null) {
+				return;
+			}
+			spill.close();
+			spill = null;
+			InputStream in = new FileInputStream(spillFile);
+			try {
+				int len;
+				while ((len = in.read(writer.buffer)) > 0) {
+					writer.writeBytes(writer.buffer, 0, len);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		void dispose() {
+			memory.reset();
+			if (spill != null) {
+				try {
+					spill.close();
+				} catch (IOException e) {
+					/* ignore */
+				}
+				spill = null;
+			}
+			if (spillFile != null) {
+				spillFile.delete();
+				spillFile = null;
+			}
+		}
+
+		private static int put(byte[] target, int pos, long value, int bytes) {
+			for (int i = 0; i < bytes; i++) {
+				target[pos + i] = (byte) (value >>> (8 * i));
+			}
+			return pos + bytes;
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package org.javasnippets.utils.zip;
+
+/**
+ * Cancels a running streaming zip-operation from another thread. The writer
+ * checks it after every buffer, so it stops within one buffer of data.
+ *
+ * @author ckroeger
+ */
+public class ZipCancellation {
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Requests the cancellation.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Determines if the cancellation was requested.
+	 *
+	 * @return true if cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+}
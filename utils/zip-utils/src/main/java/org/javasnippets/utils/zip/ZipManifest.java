@@ -0,0 +1,195 @@
+package org.javasnippets.utils.zip;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checksum-manifest of a zip-file: the digests of every entry for a list of
+ * algorithms. The text-format is UTF-8, one header-line
+ * <code># zip-manifest CRC32C SHA-256</code> and one line per entry with the
+ * hex-digests and the entry-name, separated by tabs.
+ *
+ * @author ckroeger
+ */
+public class ZipManifest {
+
+	/** Name of the manifest-entry inside a zip-file. */
+	public static final String ENTRY_NAME = "META-INF/CHECKSUMS";
+
+	/** Suffix of the manifest-file next to a zip-file. */
+	public static final String FILE_SUFFIX = ".checksums";
+
+	private static final String HEADER = "# zip-manifest";
+	private static final String ENCODING = "UTF-8";
+
+	private final String[] algorithms;
+	private final Map<String, String[]> entries = new LinkedHashMap<String, String[]>();
+
+	/**
+	 * Creates an empty manifest.
+	 *
+	 * @param algorithms
+	 *            names of the digest-algorithms (!EMPTY)
+	 */
+	public ZipManifest(String... algorithms) {
+		if (algorithms == null || algorithms.length == 0) {
+			throw new IllegalArgumentException("no digest-algorithm given");
+		}
+		this.algorithms = algorithms.clone();
+	}
+
+	/**
+	 * Adds the digests of an entry.
+	 *
+	 * @param entryName
+	 *            name of the zip-entry (!EMPTY)
+	 * @param digests
+	 *            hex-digests in the order of the algorithms (!NULL)
+	 */
+	public void put(String entryName, String[] digests) {
+		if (entryName == null || entryName.isEmpty()
+				|| entryName.indexOf('\n') >= 0) {
+			throw new IllegalArgumentException("invalid entry: " + entryName);
+		}
+		if (digests == null || digests.length != algorithms.length) {
+			throw new IllegalArgumentException("expected "
+					+ algorithms.length + " digests for " + entryName);
+		}
+		entries.put(entryName, digests.clone());
+	}
+
+	/**
+	 * Determines the names of the digest-algorithms.
+	 *
+	 * @return names of the algorithms (!NULL)
+	 */
+	public List<String> getAlgorithms() {
+		return Collections.unmodifiableList(Arrays.asList(algorithms));
+	}
+
+	/**
+	 * Determines the names of all listed entries.
+	 *
+	 * @return entry-names in the order they were added (!NULL)
+	 */
+	public List<String> getEntryNames() {
+		return Collections.unmodifiableList(new ArrayList<String>(entries
+				.keySet()));
+	}
+
+	/**
+	 * Determines the digests of an entry.
+	 *
+	 * @param entryName
+	 *            name of the zip-entry
+	 * @return hex-digests in the order of the algorithms or null if the entry
+	 *         is not listed
+	 */
+	public String[] getDigests(String entryName) {
+		String[] digests = entries.get(entryName);
+		return digests == null ? null : digests.clone();
+	}
+
+	/**
+	 * Determines a single digest of an entry.
+	 *
+	 * @param entryName
+	 *            name of the zip-entry
+	 * @param algorithm
+	 *            name of the algorithm
+	 * @return hex-digest or null if the entry or algorithm is not listed
+	 */
+	public String getDigest(String entryName, String algorithm) {
+		String[] digests = entries.get(entryName);
+		int index = Arrays.asList(algorithms).indexOf(algorithm);
+		return digests == null || index < 0 ? null : digests[index];
+	}
+
+	/**
+	 * Determines the number of listed entries.
+	 *
+	 * @return number of entries
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the manifest. The stream is flushed but not closed.
+	 *
+	 * @param out
+	 *            the target (!NULL)
+	 * @throws IOException
+	 *             if the stream can not be written
+	 */
+	public void write(OutputStream out) throws IOException {
+		Writer writer = new OutputStreamWriter(out, ENCODING);
+		writer.write(HEADER);
+		for (String algorithm : algorithms) {
+			writer.write(' ');
+			writer.write(algorithm);
+		}
+		writer.write('\n');
+		for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+			for (String digest : entry.getValue()) {
+				writer.write(digest);
+				writer.write('\t');
+			}
+			writer.write(entry.getKey());
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Reads a manifest written by {@link #write(OutputStream)}. The stream is
+	 * not closed.
+	 *
+	 * @param in
+	 *            the source (!NULL)
+	 * @return the {@link ZipManifest}
+	 * @throws IOException
+	 *             if the stream can not be read or has an invalid format
+	 */
+	public static ZipManifest read(InputStream in) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+				ENCODING));
+		String header = reader.readLine();
+		if (header == null || !header.startsWith(HEADER + " ")) {
+			throw new IOException("no zip-manifest: " + header);
+		}
+		ZipManifest manifest = new ZipManifest(header
+				.substring(HEADER.length() + 1).trim().split(" +"));
+		int columns = manifest.algorithms.length + 1;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty()) {
+				continue;
+			}
+			String[] parts = line.split("\t", columns);
+			if (parts.length != columns) {
+				throw new IOException("invalid manifest-line: " + line);
+			}
+			manifest.put(parts[columns - 1],
+					Arrays.copyOf(parts, columns - 1));
+		}
+		return manifest;
+	}
+
+	@Override
+	public String toString() {
+		return "ZipManifest [algorithms=" + Arrays.toString(algorithms)
+				+ ", entries=" + entries.size() + "]";
+	}
+}
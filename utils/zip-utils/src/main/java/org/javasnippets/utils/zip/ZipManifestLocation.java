@@ -0,0 +1,18 @@
+package org.javasnippets.utils.zip;
+
+/**
+ * Where a {@link ZipManifest} is written when zipping.
+ *
+ * @author ckroeger
+ */
+public enum ZipManifestLocation {
+
+	/** The manifest is only returned. */
+	NONE,
+
+	/** As last entry {@link ZipManifest#ENTRY_NAME} of the zip-file. */
+	INSIDE,
+
+	/** As file with the {@link ZipManifest#FILE_SUFFIX} next to the zip-file. */
+	BESIDE
+}
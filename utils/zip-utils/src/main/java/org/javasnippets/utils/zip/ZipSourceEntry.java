@@ -0,0 +1,37 @@
+package org.javasnippets.utils.zip;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content to be zipped as one entry, e.g. generated data or a file of another
+ * storage. See
+ * {@link ZipUtils#zipEntries(Iterable, java.io.OutputStream, ZipCancellation)}.
+ *
+ * @author ckroeger
+ */
+public interface ZipSourceEntry {
+
+	/**
+	 * Determines the name of the zip-entry.
+	 *
+	 * @return the name (!EMPTY)
+	 */
+	String getName();
+
+	/**
+	 * Determines the modification-time of the zip-entry.
+	 *
+	 * @return time in milliseconds
+	 */
+	long getTime();
+
+	/**
+	 * Opens the content, it is read to the end and closed by the caller.
+	 *
+	 * @return the content (!NULL)
+	 * @throws IOException
+	 *             if the content can not be opened
+	 */
+	InputStream openStream() throws IOException;
+}
@@ -1,19 +1,41 @@
 package org.javasnippets.utils.zip;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.ZipFile;
+
+import org.javasnippets.utils.metrics.Instrumentations;
 
 /**
  * Utility-Class for Zip-File-Operations.
@@ -22,83 +44,501 @@ import java.util.zip.ZipOutputStream;
  */
 public class ZipUtils {
 
+	private static final String METRIC_ZIP = "zip.folder";
+	private static final String METRIC_ZIP_STREAM = "zip.stream";
+	private static final String METRIC_ENTRIES = "zip.entries";
+	private static final String METRIC_BYTES_READ = "zip.bytes.read";
+	private static final String METRIC_BYTES_WRITTEN = "zip.bytes.written";
+	private static final String METRIC_MANIFEST_READ = "zip.manifest.read";
+	private static final String METRIC_VERIFY = "zip.verify";
+
+	/**
+	 * Zips a folder. The zip-file is written to a temporary file next to it
+	 * and renamed when complete, so a failure never leaves a corrupt
+	 * zip-file.
+	 * 
+	 * @param destFile
+	 *            path of the zip-file to create (!EMPTY)
+	 * @param sourceFolder
+	 *            path of the folder to zip (!EMPTY)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (!NULL)
+	 * @throws UncheckedIOException
+	 *             if a file can not be read or written
+	 */
 	public static void zipFolder(String destFile, String sourceFolder,
 			String[] foldersToIgnore) {
-		List<String> fileList = new ArrayList<String>();
-		File node = new File(sourceFolder);
+		try {
+			zipFolder(destFile, sourceFolder, foldersToIgnore, null,
+					ZipManifestLocation.NONE);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Failed to zip " + sourceFolder
+					+ " to " + destFile, ex);
+		}
+	}
+
+	/**
+	 * Zips a folder and computes the digests of every file on the same
+	 * buffers that are compressed, so every byte is read only once.
+	 * 
+	 * @param destFile
+	 *            path of the zip-file to create (!EMPTY)
+	 * @param sourceFolder
+	 *            path of the folder to zip (!EMPTY)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (!NULL)
+	 * @param digestAlgorithms
+	 *            digest-algorithms like <code>CRC32C</code> or
+	 *            <code>SHA-256</code>, null or empty for none
+	 * @param manifestLocation
+	 *            where to write the {@link ZipManifest} (!NULL)
+	 * @return the {@link ZipManifest} or null if no digest was computed
+	 * @throws IOException
+	 *             if a file can not be read or written
+	 */
+	public static ZipManifest zipFolder(String destFile, String sourceFolder,
+			String[] foldersToIgnore, String[] digestAlgorithms,
+			ZipManifestLocation manifestLocation) throws IOException {
+		if (manifestLocation == null) {
+			throw new IllegalArgumentException("manifestLocation is null");
+		}
+		boolean digest = digestAlgorithms != null
+				&& digestAlgorithms.length > 0;
+		EntryDigester digester = digest ? new EntryDigester(digestAlgorithms)
+				: null;
 		Set<String> ignoredFolders = new HashSet<String>(
 				Arrays.asList(foldersToIgnore));
-		generateFileList(node, node, fileList, ignoredFolders);
-		zipFileListEntries(destFile, fileList, node, null);
+		ZipManifestLocation location = digest ? manifestLocation
+				: ZipManifestLocation.NONE;
+		// walked while zipping, the file-list is never held in memory
+		ZipManifest manifest = zipFolderEntries(destFile, new FolderEntries(
+				new File(sourceFolder), ignoredFolders), digester, location);
+		if (location == ZipManifestLocation.BESIDE) {
+			Path target = Paths.get(destFile + ZipManifest.FILE_SUFFIX);
+			Path temp = createTempSibling(target);
+			boolean done = false;
+			try {
+				OutputStream out = Files.newOutputStream(temp);
+				try {
+					manifest.write(out);
+				} finally {
+					out.close();
+				}
+				moveAtomically(temp, target);
+				done = true;
+			} finally {
+				if (!done) {
+					Files.deleteIfExists(temp);
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Zips a folder directly into a stream, e.g. a HTTP-response, without a
+	 * temporary file. The folder is walked while zipping and the stream is
+	 * flushed after every entry, so the consumer gets the first bytes at
+	 * once. The internal buffers are bounded (about 200 KB) and a slow
+	 * consumer blocks the writing thread. The stream is finished but not
+	 * closed.
+	 * 
+	 * @param sourceFolder
+	 *            path of the folder to zip (!EMPTY)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (NULLABLE)
+	 * @param target
+	 *            the target (!NULL)
+	 * @param cancellation
+	 *            to cancel from another thread (NULLABLE)
+	 * @return number of zipped files
+	 * @throws IOException
+	 *             if a file can not be read or the target not written, an
+	 *             {@link InterruptedIOException} if cancelled
+	 */
+	public static long zipFolder(String sourceFolder,
+			String[] foldersToIgnore, OutputStream target,
+			ZipCancellation cancellation) throws IOException {
+		Set<String> ignoredFolders = new HashSet<String>();
+		if (foldersToIgnore != null) {
+			ignoredFolders.addAll(Arrays.asList(foldersToIgnore));
+		}
+		File node = new File(sourceFolder);
+		return zipEntries(new FolderEntries(node, ignoredFolders), target,
+				cancellation);
+	}
+
+	/**
+	 * Zips a folder directly into a blocking channel, see
+	 * {@link #zipFolder(String, String[], OutputStream, ZipCancellation)}.
+	 * The channel is not closed.
+	 * 
+	 * @param sourceFolder
+	 *            path of the folder to zip (!EMPTY)
+	 * @param foldersToIgnore
+	 *            names of folders to skip (NULLABLE)
+	 * @param target
+	 *            the target in blocking mode (!NULL)
+	 * @param cancellation
+	 *            to cancel from another thread (NULLABLE)
+	 * @return number of zipped files
+	 * @throws IOException
+	 *             if a file can not be read or the target not written, an
+	 *             {@link InterruptedIOException} if cancelled
+	 */
+	public static long zipFolder(String sourceFolder,
+			String[] foldersToIgnore, WritableByteChannel target,
+			ZipCancellation cancellation) throws IOException {
+		if (target == null) {
+			throw new IllegalArgumentException("target is null");
+		}
+		return zipFolder(sourceFolder, foldersToIgnore,
+				Channels.newOutputStream(target), cancellation);
 	}
 
-	private static void zipFileListEntries(String zipFile,
-			List<String> fileList, File node, String rootFolder) {
-		byte[] buffer = new byte[1024];
-		FileOutputStream fos = null;
-		ZipOutputStream zos = null;
+	/**
+	 * Zips the given entries directly into a stream, see
+	 * {@link #zipFolder(String, String[], OutputStream, ZipCancellation)}.
+	 * The entries are opened one after the other while zipping.
+	 * 
+	 * @param entries
+	 *            the entries (!NULL)
+	 * @param target
+	 *            the target (!NULL)
+	 * @param cancellation
+	 *            to cancel from another thread (NULLABLE)
+	 * @return number of zipped entries
+	 * @throws IOException
+	 *             if an entry can not be read or the target not written, an
+	 *             {@link InterruptedIOException} if cancelled
+	 */
+	public static long zipEntries(Iterable<? extends ZipSourceEntry> entries,
+			OutputStream target, ZipCancellation cancellation)
+			throws IOException {
+		if (entries == null || target == null) {
+			throw new IllegalArgumentException();
+		}
+		long start = Instrumentations.startTime();
+		ZipArchiveWriter writer = new ZipArchiveWriter(target);
+		writer.setCancellation(cancellation);
+		writer.setFlushEntries(true);
+		boolean done = false;
 		try {
-			fos = new FileOutputStream(zipFile);
-			zos = new ZipOutputStream(fos);
-
-			System.out.println("Output to Zip : " + zipFile);
-			FileInputStream in = null;
-
-			for (String file : fileList) {
-				System.out.println("File Added : " + file);
-				String zipEntryPath = rootFolder != null ? rootFolder
-						+ File.separator + file : file;
-				ZipEntry ze = new ZipEntry(zipEntryPath);
-				zos.putNextEntry(ze);
+			for (ZipSourceEntry entry : entries) {
+				InputStream in = entry.openStream();
 				try {
-					in = new FileInputStream(node.getAbsolutePath()
-							+ File.separator + file);
-					int len;
-					while ((len = in.read(buffer)) > 0) {
-						zos.write(buffer, 0, len);
-					}
+					writer.writeEntry(entry.getName(), entry.getTime(), in);
 				} finally {
 					in.close();
 				}
+				Instrumentations.count(METRIC_ENTRIES, 1);
+			}
+			writer.finish();
+			done = true;
+		} finally {
+			if (!done) {
+				writer.abort();
 			}
+			Instrumentations.count(METRIC_BYTES_READ, writer.getBytesRead());
+			Instrumentations.count(METRIC_BYTES_WRITTEN,
+					writer.getBytesWritten());
+			Instrumentations.time(METRIC_ZIP_STREAM, start);
+		}
+		return writer.getEntryCount();
+	}
 
-			zos.closeEntry();
-			System.out.println("Folder successfully compressed");
+	private static ZipManifest zipFolderEntries(String zipFile,
+			FolderEntries entries, EntryDigester digester,
+			ZipManifestLocation manifestLocation) throws IOException {
+		// a stale manifest of the source is replaced
+		String staleManifest = null;
+		if (manifestLocation == ZipManifestLocation.INSIDE) {
+			staleManifest = ZipManifest.ENTRY_NAME.replace('/',
+					File.separatorChar);
+		}
+		long start = Instrumentations.startTime();
+		ZipManifest manifest = digester != null ? new ZipManifest(
+				digester.getAlgorithms()) : null;
+		Path target = Paths.get(zipFile).toAbsolutePath();
+		Path temp = createTempSibling(target);
+		ZipArchiveWriter writer = null;
+		boolean done = false;
+		try {
+			writer = new ZipArchiveWriter(Files.newOutputStream(temp),
+					Deflater.DEFAULT_COMPRESSION,
+					ZipArchiveWriter.DEFAULT_MEMORY_THRESHOLD, temp
+							.getParent().toFile());
+			for (ZipSourceEntry entry : entries) {
+				String zipEntryPath = entry.getName();
+				if (zipEntryPath.equals(staleManifest)) {
+					continue;
+				}
+				InputStream in = entry.openStream();
+				try {
+					writer.writeEntry(zipEntryPath, entry.getTime(), in,
+							digester);
+				} finally {
+					in.close();
+				}
+				if (digester != null) {
+					manifest.put(zipEntryPath, digester.finish());
+				}
+				Instrumentations.count(METRIC_ENTRIES, 1);
+			}
 
-		} catch (IOException ex) {
-			ex.printStackTrace();
+			if (manifestLocation == ZipManifestLocation.INSIDE) {
+				ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+				manifest.write(manifestBytes);
+				writer.writeEntry(ZipManifest.ENTRY_NAME,
+						System.currentTimeMillis(), new ByteArrayInputStream(
+								manifestBytes.toByteArray()));
+			}
+			writer.close();
+			moveAtomically(temp, target);
+			done = true;
 		} finally {
-			try {
-				zos.close();
-			} catch (IOException e) {
-				e.printStackTrace();
+			if (!done) {
+				if (writer != null) {
+					writer.abort();
+					closeQuietly(writer);
+				}
+				Files.deleteIfExists(temp);
+			}
+			if (writer != null) {
+				Instrumentations.count(METRIC_BYTES_READ,
+						writer.getBytesRead());
+				Instrumentations.count(METRIC_BYTES_WRITTEN,
+						writer.getBytesWritten());
+			}
+			Instrumentations.time(METRIC_ZIP, start);
+		}
+		return manifest;
+	}
+
+	/**
+	 * Creates a hidden temporary file in the directory of the target, so it
+	 * can be renamed atomically.
+	 */
+	private static Path createTempSibling(Path target) throws IOException {
+		Path directory = target.toAbsolutePath().getParent();
+		return Files.createTempFile(directory, "." + target.getFileName(),
+				".tmp");
+	}
+
+	/**
+	 * Renames the temporary file to the target, replacing an existing file.
+	 */
+	private static void moveAtomically(Path temp, Path target)
+			throws IOException {
+		try {
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+					StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Closes silently.
+	 * 
+	 * @param toClose
+	 *            {@link Closeable} to close (NULLABLE)
+	 */
+	private static void closeQuietly(Closeable toClose) {
+		if (toClose == null) {
+			return;
+		}
+		try {
+			toClose.close();
+		} catch (IOException e) {
+			/* ignore */
+		}
+	}
+
+	/**
+	 * Reads the {@link ZipManifest} of a zip-file, first the entry
+	 * {@link ZipManifest#ENTRY_NAME}, then the file next to it.
+	 * 
+	 * @param zipFile
+	 *            the zip-file (!NULL)
+	 * @return the {@link ZipManifest} or null if there is none
+	 * @throws IOException
+	 *             if the zip-file or manifest can not be read
+	 */
+	public static ZipManifest readZipManifest(File zipFile) throws IOException {
+		ZipFile zip = new ZipFile(zipFile);
+		try {
+			ZipEntry entry = zip.getEntry(ZipManifest.ENTRY_NAME);
+			if (entry != null) {
+				InputStream in = zip.getInputStream(entry);
+				try {
+					return ZipManifest.read(in);
+				} finally {
+					in.close();
+				}
 			}
+		} finally {
+			zip.close();
+		}
+		File besides = new File(zipFile.getPath() + ZipManifest.FILE_SUFFIX);
+		if (!besides.isFile()) {
+			return null;
+		}
+		InputStream in = new FileInputStream(besides);
+		try {
+			return ZipManifest.read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks a zip-file against its own {@link ZipManifest}, see
+	 * {@link #readZipManifest(File)}.
+	 * 
+	 * @param zipFile
+	 *            the zip-file (!NULL)
+	 * @param threads
+	 *            number of threads reading in parallel (&gt; 0)
+	 * @return the {@link ZipVerification}
+	 * @throws IOException
+	 *             if there is no manifest or the zip-file can not be read
+	 */
+	public static ZipVerification verifyZip(File zipFile, int threads)
+			throws IOException {
+		ZipManifest manifest = readZipManifest(zipFile);
+		if (manifest == null) {
+			throw new IOException("no zip-manifest found for " + zipFile);
 		}
+		return verifyZip(zipFile, manifest, threads);
 	}
 
-	private static void generateFileList(File node, File rootNode,
-			List<String> fileList, Set<String> ignoredFolders) {
-		// add file only
-		if (node.isFile()) {
-			fileList.add(generateZipEntry(node, rootNode));
+	/**
+	 * Checks a zip-file against a {@link ZipManifest}. The entries are
+	 * inflated and digested in parallel, each thread with its own share of
+	 * the entries.
+	 * 
+	 * @param zipFile
+	 *            the zip-file (!NULL)
+	 * @param manifest
+	 *            the expected digests (!NULL)
+	 * @param threads
+	 *            number of threads reading in parallel (&gt; 0)
+	 * @return the {@link ZipVerification}
+	 * @throws IOException
+	 *             if the zip-file can not be read
+	 */
+	public static ZipVerification verifyZip(File zipFile,
+			final ZipManifest manifest, int threads) throws IOException {
+		if (zipFile == null || manifest == null || threads <= 0) {
+			throw new IllegalArgumentException();
+		}
+		long start = Instrumentations.startTime();
+		final String[] algorithms = manifest.getAlgorithms().toArray(
+				new String[0]);
+		// fail early on unsupported algorithms
+		new EntryDigester(algorithms);
+		final ZipVerification verification = new ZipVerification();
+		final ZipFile zip = new ZipFile(zipFile);
+		ExecutorService executor = null;
+		try {
+			List<List<ZipEntry>> shares = new ArrayList<List<ZipEntry>>();
+			for (int i = 0; i < threads; i++) {
+				shares.add(new ArrayList<ZipEntry>());
+			}
+			Set<String> found = new HashSet<String>();
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			int count = 0;
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (entry.isDirectory() || ZipManifest.ENTRY_NAME.equals(name)) {
+					continue;
+				}
+				found.add(name);
+				if (manifest.getDigests(name) == null) {
+					verification.unlisted(name);
+					continue;
+				}
+				shares.get(count++ % threads).add(entry);
+			}
+			for (String name : manifest.getEntryNames()) {
+				if (!found.contains(name)) {
+					verification.missing(name);
+				}
+			}
 
+			executor = Executors.newFixedThreadPool(Math.min(threads,
+					Math.max(1, count)));
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (final List<ZipEntry> share : shares) {
+				if (share.isEmpty()) {
+					continue;
+				}
+				results.add(executor.submit(new Callable<Void>() {
+					public Void call() throws IOException {
+						verifyEntries(zip, share, manifest, algorithms,
+								verification);
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> result : results) {
+				waitFor(result);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			zip.close();
+			Instrumentations.time(METRIC_VERIFY, start);
 		}
+		return verification;
+	}
 
-		if (node.isDirectory()) {
-			boolean processFolder = !ignoredFolders.contains(node.getName());
-			if (processFolder) {
-				String[] subNote = node.list();
-				for (String filename : subNote) {
-					generateFileList(new File(node, filename), rootNode,
-							fileList, ignoredFolders);
+	private static void verifyEntries(ZipFile zip, List<ZipEntry> entries,
+			ZipManifest manifest, String[] algorithms,
+			ZipVerification verification) throws IOException {
+		EntryDigester digester = new EntryDigester(algorithms);
+		byte[] buffer = new byte[64 * 1024];
+		for (ZipEntry entry : entries) {
+			InputStream in = zip.getInputStream(entry);
+			long read = 0;
+			try {
+				int len;
+				while ((len = in.read(buffer)) > 0) {
+					digester.update(buffer, 0, len);
+					read += len;
 				}
+			} finally {
+				in.close();
+			}
+			Instrumentations.count(METRIC_BYTES_READ, read);
+			String name = entry.getName();
+			if (Arrays.equals(digester.finish(), manifest.getDigests(name))) {
+				verification.verified(name);
+			} else {
+				verification.mismatched(name);
 			}
 		}
 	}
 
-	private static String generateZipEntry(File node, File rootNode) {
-		String file = node.toString();
-		return file.substring(rootNode.toString().length() + 1, file.length());
+	private static void waitFor(Future<Void> result) throws IOException {
+		try {
+			result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("verification interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IOException(cause);
+		}
 	}
 
 	public static String[] readJarManifestEntries(String[] manifestKeys, File jarFile)
@@ -106,6 +546,7 @@ public class ZipUtils {
 		if (manifestKeys == null) {
 			return null;
 		}
+		long start = Instrumentations.startTime();
 		JarFile jar = null;
 		String[] ret = new String[manifestKeys.length];
 		try {
@@ -118,6 +559,7 @@ public class ZipUtils {
 		} finally {
 			if (jar != null)
 				jar.close();
+			Instrumentations.time(METRIC_MANIFEST_READ, start);
 		}
 		return ret;
 	}
@@ -0,0 +1,91 @@
+package org.javasnippets.utils.zip;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Result of checking a zip-file against its {@link ZipManifest}.
+ *
+ * @author ckroeger
+ */
+public class ZipVerification {
+
+	private final Set<String> verified = new TreeSet<String>();
+	private final Set<String> mismatched = new TreeSet<String>();
+	private final Set<String> missing = new TreeSet<String>();
+	private final Set<String> unlisted = new TreeSet<String>();
+
+	ZipVerification() {
+		/* filled by ZipUtils */
+	}
+
+	synchronized void verified(String entryName) {
+		verified.add(entryName);
+	}
+
+	synchronized void mismatched(String entryName) {
+		mismatched.add(entryName);
+	}
+
+	synchronized void missing(String entryName) {
+		missing.add(entryName);
+	}
+
+	synchronized void unlisted(String entryName) {
+		unlisted.add(entryName);
+	}
+
+	/**
+	 * Determines the entries whose digests match the manifest.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public synchronized Set<String> getVerified() {
+		return Collections.unmodifiableSet(new TreeSet<String>(verified));
+	}
+
+	/**
+	 * Determines the entries whose digests differ from the manifest.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public synchronized Set<String> getMismatched() {
+		return Collections.unmodifiableSet(new TreeSet<String>(mismatched));
+	}
+
+	/**
+	 * Determines the entries of the manifest which are not in the zip-file.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public synchronized Set<String> getMissing() {
+		return Collections.unmodifiableSet(new TreeSet<String>(missing));
+	}
+
+	/**
+	 * Determines the file-entries of the zip-file which are not in the
+	 * manifest.
+	 *
+	 * @return sorted entry-names (!NULL)
+	 */
+	public synchronized Set<String> getUnlisted() {
+		return Collections.unmodifiableSet(new TreeSet<String>(unlisted));
+	}
+
+	/**
+	 * Determines if the zip-file matches the manifest exactly.
+	 *
+	 * @return true if nothing is mismatched, missing or unlisted
+	 */
+	public synchronized boolean isSuccessful() {
+		return mismatched.isEmpty() && missing.isEmpty() && unlisted.isEmpty();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ZipVerification [verified=" + verified.size()
+				+ ", mismatched=" + mismatched + ", missing=" + missing
+				+ ", unlisted=" + unlisted + "]";
+	}
+}
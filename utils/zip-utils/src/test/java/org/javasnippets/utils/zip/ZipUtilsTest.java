@@ -0,0 +1,404 @@
+package org.javasnippets.utils.zip;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ZipUtilsTest {
+
+	private static final String[] DIGESTS = { "CRC32", "SHA-256" };
+
+	private Path workDir;
+	private File source;
+
+	@BeforeMethod
+	public void createSource() throws IOException {
+		workDir = Files.createTempDirectory("zip-utils");
+		source = new File(workDir.toFile(), "source");
+		write("a.txt", "content a");
+		write("sub/b.txt", "content b");
+		write("target/ignored.txt", "ignored");
+		// larger than the copy-buffer
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			large.append(i).append('\n');
+		}
+		write("sub/large.txt", large.toString());
+	}
+
+	@AfterMethod
+	public void deleteWorkDir() {
+		delete(workDir.toFile());
+	}
+
+	@Test
+	public void testZipWithManifestInside() throws Exception {
+		File zip = new File(workDir.toFile(), "inside.zip");
+		ZipManifest manifest = ZipUtils.zipFolder(zip.getPath(),
+				source.getPath(), new String[] { "target" }, DIGESTS,
+				ZipManifestLocation.INSIDE);
+
+		assertEquals(manifest.size(), 3);
+		String entry = "sub" + File.separator + "b.txt";
+		assertEquals(manifest.getDigest(entry, "SHA-256"),
+				sha256("content b"));
+		assertEquals(manifest.getDigest(entry, "CRC32").length(), 8);
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertNotNull(zipFile.getEntry(ZipManifest.ENTRY_NAME));
+			assertEquals(zipFile.size(), 4);
+		} finally {
+			zipFile.close();
+		}
+		assertFalse(new File(zip.getPath() + ZipManifest.FILE_SUFFIX).exists());
+
+		ZipVerification verification = ZipUtils.verifyZip(zip, 2);
+		assertTrue(verification.isSuccessful(), verification.toString());
+		assertEquals(verification.getVerified().size(), 3);
+	}
+
+	@Test
+	public void testZipWithCrc32c() throws Exception {
+		try {
+			Class.forName("java.util.zip.CRC32C");
+		} catch (ClassNotFoundException e) {
+			throw new SkipException("CRC32C needs Java 9");
+		}
+		File zip = new File(workDir.toFile(), "crc32c.zip");
+		ZipManifest manifest = ZipUtils.zipFolder(zip.getPath(),
+				source.getPath(), new String[] { "target" },
+				new String[] { "CRC32C" }, ZipManifestLocation.INSIDE);
+
+		String entry = "sub" + File.separator + "b.txt";
+		assertEquals(manifest.getDigest(entry, "CRC32C").length(), 8);
+		assertTrue(ZipUtils.verifyZip(zip, 2).isSuccessful());
+	}
+
+	@Test
+	public void testZipReplacesStaleManifest() throws Exception {
+		write(ZipManifest.ENTRY_NAME, "stale");
+		File zip = new File(workDir.toFile(), "stale.zip");
+		ZipManifest manifest = ZipUtils.zipFolder(zip.getPath(),
+				source.getPath(), new String[] { "target" }, DIGESTS,
+				ZipManifestLocation.INSIDE);
+
+		assertEquals(manifest.size(), 3);
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(zipFile.size(), 4);
+		} finally {
+			zipFile.close();
+		}
+		assertTrue(ZipUtils.verifyZip(zip, 2).isSuccessful());
+	}
+
+	@Test
+	public void testZipWithManifestBeside() throws Exception {
+		File zip = new File(workDir.toFile(), "beside.zip");
+		ZipUtils.zipFolder(zip.getPath(), source.getPath(),
+				new String[] { "target" }, new String[] { "SHA-256" },
+				ZipManifestLocation.BESIDE);
+		assertTrue(new File(zip.getPath() + ZipManifest.FILE_SUFFIX).isFile());
+
+		ZipManifest manifest = ZipUtils.readZipManifest(zip);
+		assertEquals(manifest.getAlgorithms().size(), 1);
+		assertTrue(ZipUtils.verifyZip(zip, 4).isSuccessful());
+	}
+
+	@Test
+	public void testVerifyDetectsChanges() throws Exception {
+		File zip = new File(workDir.toFile(), "original.zip");
+		ZipManifest manifest = ZipUtils.zipFolder(zip.getPath(),
+				source.getPath(), new String[] { "target" }, DIGESTS,
+				ZipManifestLocation.NONE);
+		assertNull(ZipUtils.readZipManifest(zip));
+
+		File changed = new File(workDir.toFile(), "changed.zip");
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(
+				changed));
+		try {
+			out.putNextEntry(new ZipEntry("a.txt"));
+			out.write("changed".getBytes("UTF-8"));
+			out.putNextEntry(new ZipEntry("new.txt"));
+			out.write("new".getBytes("UTF-8"));
+		} finally {
+			out.close();
+		}
+
+		ZipVerification verification = ZipUtils.verifyZip(changed, manifest,
+				3);
+		assertFalse(verification.isSuccessful());
+		assertEquals(verification.getMismatched().toString(), "[a.txt]");
+		assertEquals(verification.getUnlisted().toString(), "[new.txt]");
+		assertEquals(verification.getMissing().size(), 2);
+	}
+
+	@Test
+	public void testZipReplacesAtomically() throws Exception {
+		File zip = new File(workDir.toFile(), "atomic.zip");
+		Files.write(zip.toPath(), "old".getBytes("UTF-8"));
+		ZipUtils.zipFolder(zip.getPath(), source.getPath(),
+				new String[] { "sub" });
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(zipFile.size(), 2);
+			assertNotNull(zipFile.getEntry("a.txt"));
+		} finally {
+			zipFile.close();
+		}
+		// no temporary file is left
+		assertEquals(workDir.toFile().list().length, 2);
+	}
+
+	@Test(expectedExceptions = UncheckedIOException.class)
+	public void testZipFailureIsReported() throws Exception {
+		ZipUtils.zipFolder(new File(workDir.toFile(), "missing/x.zip")
+				.getPath(), source.getPath(), new String[0]);
+	}
+
+	@Test
+	public void testZip64EntryCount() throws Exception {
+		File zip = new File(workDir.toFile(), "many.zip");
+		int count = 70000;
+		ZipArchiveWriter writer = new ZipArchiveWriter(new FileOutputStream(
+				zip), Deflater.BEST_SPEED, 64 * 1024, workDir.toFile());
+		try {
+			for (int i = 0; i < count; i++) {
+				writer.writeEntry("dir/entry" + i, 0, new ByteArrayInputStream(
+						("content " + i).getBytes("UTF-8")));
+			}
+		} finally {
+			writer.close();
+		}
+		assertEquals(writer.getEntryCount(), count);
+		assertEquals(writer.getBytesWritten(), zip.length());
+		// the spill-file is removed
+		assertEquals(workDir.toFile().list().length, 2);
+
+		ZipFile zipFile = new ZipFile(zip);
+		try {
+			assertEquals(zipFile.size(), count);
+			ZipEntry last = zipFile.getEntry("dir/entry" + (count - 1));
+			assertEquals(read(zipFile.getInputStream(last)), "content "
+					+ (count - 1));
+		} finally {
+			zipFile.close();
+		}
+		ZipInputStream in = new ZipInputStream(new FileInputStream(zip));
+		try {
+			int streamed = 0;
+			while (in.getNextEntry() != null) {
+				streamed++;
+			}
+			assertEquals(streamed, count);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testZipToChannel() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long entries = ZipUtils.zipFolder(source.getPath(),
+				new String[] { "target" }, Channels.newChannel(out), null);
+		assertEquals(entries, 3);
+
+		Map<String, String> content = new TreeMap<String, String>();
+		ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(
+				out.toByteArray()));
+		ZipEntry entry;
+		while ((entry = in.getNextEntry()) != null) {
+			content.put(entry.getName(), read(in));
+		}
+		assertEquals(content.size(), 3);
+		assertEquals(content.get("a.txt"), "content a");
+		assertEquals(content.get("sub" + File.separator + "b.txt"),
+				"content b");
+	}
+
+	@Test
+	public void testZipToPipeWithBackpressure() throws Exception {
+		PipedInputStream pipeIn = new PipedInputStream(1024);
+		final PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+		final List<ZipSourceEntry> entries = randomEntries(5, 100 * 1024);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> producer = executor.submit(new Callable<Long>() {
+				public Long call() throws IOException {
+					try {
+						return ZipUtils.zipEntries(entries, pipeOut, null);
+					} finally {
+						pipeOut.close();
+					}
+				}
+			});
+			// the producer is blocked by the full pipe
+			Thread.sleep(300);
+			assertFalse(producer.isDone());
+
+			ZipInputStream in = new ZipInputStream(pipeIn);
+			int count = 0;
+			ZipEntry entry;
+			while ((entry = in.getNextEntry()) != null) {
+				assertEquals(entry.getName(), "entry" + count);
+				assertEquals(read(in).length(), 100 * 1024);
+				count++;
+			}
+			assertEquals(count, 5);
+			assertEquals(producer.get().longValue(), 5);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testZipToPipeCancelled() throws Exception {
+		PipedInputStream pipeIn = new PipedInputStream(1024);
+		final PipedOutputStream pipeOut = new PipedOutputStream(pipeIn);
+		final List<ZipSourceEntry> entries = randomEntries(50, 100 * 1024);
+		final ZipCancellation cancellation = new ZipCancellation();
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Long> producer = executor.submit(new Callable<Long>() {
+				public Long call() throws IOException {
+					try {
+						return ZipUtils.zipEntries(entries, pipeOut,
+								cancellation);
+					} finally {
+						pipeOut.close();
+					}
+				}
+			});
+			ZipInputStream in = new ZipInputStream(pipeIn);
+			assertEquals(in.getNextEntry().getName(), "entry0");
+			cancellation.cancel();
+			// drain what is still buffered
+			byte[] buffer = new byte[8192];
+			while (pipeIn.read(buffer) >= 0) {
+				/* discard */
+			}
+			try {
+				producer.get();
+				fail("cancellation expected");
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof InterruptedIOException,
+						e.getCause().toString());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expectedExceptions = IllegalArgumentException.class)
+	public void testUnknownDigest() throws Exception {
+		ZipUtils.zipFolder(new File(workDir.toFile(), "x.zip").getPath(),
+				source.getPath(), new String[0], new String[] { "NOPE" },
+				ZipManifestLocation.NONE);
+	}
+
+	private void write(String path, String content) throws IOException {
+		File file = new File(source, path);
+		file.getParentFile().mkdirs();
+		Files.write(file.toPath(), content.getBytes("UTF-8"));
+	}
+
+	private static List<ZipSourceEntry> randomEntries(int count,
+			final int size) {
+		List<ZipSourceEntry> entries = new ArrayList<ZipSourceEntry>();
+		for (int i = 0; i < count; i++) {
+			final String name = "entry" + i;
+			final long seed = i;
+			entries.add(new ZipSourceEntry() {
+				public String getName() {
+					return name;
+				}
+
+				public long getTime() {
+					return 0;
+				}
+
+				public InputStream openStream() {
+					// printable, but hardly compressible
+					byte[] content = new byte[size];
+					Random random = new Random(seed);
+					for (int j = 0; j < size; j++) {
+						content[j] = (byte) ('a' + random.nextInt(26));
+					}
+					return new ByteArrayInputStream(content);
+				}
+			});
+		}
+		return entries;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int len;
+		while ((len = in.read(buffer)) > 0) {
+			out.write(buffer, 0, len);
+		}
+		return out.toString("UTF-8");
+	}
+
+	private static String sha256(String content) throws Exception {
+		byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+				content.getBytes("UTF-8"));
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}